@@ -0,0 +1,170 @@
+package api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JSON client for the backend APIs used in test setup.
+ *
+ * Every client shares one {@link HttpClient}, which keeps connections alive between requests and
+ * negotiates HTTP/2 where the server supports it, falling back to HTTP/1.1. Request bodies are
+ * serialized by Jackson straight to bytes, so values are always escaped correctly. Each call has an
+ * async variant returning a CompletableFuture, so independent setup calls can run concurrently.
+ */
+public final class ApiClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApiClient.class);
+
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(Long.getLong("api.timeoutSeconds", 30));
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final HttpClient HTTP = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofSeconds(10))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    private static final Map<URI, ApiClient> CLIENTS = new ConcurrentHashMap<>();
+
+    /**
+     * Status, headers and body of one response. The body is kept as bytes and parsed on demand.
+     */
+    public record ApiResponse(int statusCode, HttpHeaders headers, byte[] body) {
+
+        public boolean isSuccessful() {
+            return statusCode >= 200 && statusCode < 300;
+        }
+
+        public String bodyAsString() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Parses the body as JSON; an empty body gives a missing node.
+         */
+        public JsonNode json() {
+            try {
+                return MAPPER.readTree(body);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Response body is not JSON", e);
+            }
+        }
+
+        public <T> T as(Class<T> type) {
+            try {
+                return MAPPER.readValue(body, type);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read response body as " + type.getSimpleName(), e);
+            }
+        }
+    }
+
+    private final URI baseUri;
+    private final Duration timeout;
+
+    private ApiClient(URI baseUri, Duration timeout) {
+        this.baseUri = baseUri;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Returns the client of a base URL, e.g. "https://example.com". Clients are cached per base URL.
+     */
+    public static ApiClient forBaseUrl(String baseUrl) {
+        URI uri = URI.create(baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl);
+        return CLIENTS.computeIfAbsent(uri, key -> new ApiClient(key, DEFAULT_TIMEOUT));
+    }
+
+    public URI getBaseUri() {
+        return baseUri;
+    }
+
+    public ApiResponse get(String path) {
+        return join(getAsync(path));
+    }
+
+    public CompletableFuture<ApiResponse> getAsync(String path) {
+        return sendAsync(request(path).GET().build());
+    }
+
+    /**
+     * Posts an object serialized as JSON.
+     *
+     * @param path Path relative to the base URL, e.g. "/auth/login"
+     * @param body Object, Map or JsonNode to serialize
+     */
+    public ApiResponse postJson(String path, Object body) {
+        return join(postJsonAsync(path, body));
+    }
+
+    public CompletableFuture<ApiResponse> postJsonAsync(String path, Object body) {
+        return sendAsync(request(path)
+                .header("Content-Type", "application/json")
+                .POST(jsonBody(body))
+                .build());
+    }
+
+    public ApiResponse delete(String path) {
+        return join(deleteAsync(path));
+    }
+
+    public CompletableFuture<ApiResponse> deleteAsync(String path) {
+        return sendAsync(request(path).DELETE().build());
+    }
+
+    /**
+     * Sends a request built by the caller, e.g. with extra headers.
+     */
+    public CompletableFuture<ApiResponse> sendAsync(HttpRequest request) {
+        long start = System.nanoTime();
+        return HTTP.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    logger.debug("{} {} -> {} ({}, {} ms)", request.method(), request.uri(), response.statusCode(),
+                            response.version(), (System.nanoTime() - start) / 1_000_000);
+                    return new ApiResponse(response.statusCode(), response.headers(), response.body());
+                });
+    }
+
+    /**
+     * Starts a request to a path of this client's base URL, with the default timeout and JSON accept header.
+     */
+    public HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(baseUri.getPath() + (path.startsWith("/") ? path : "/" + path)))
+                .timeout(timeout)
+                .header("Accept", "application/json");
+    }
+
+    static HttpRequest.BodyPublisher jsonBody(Object body) {
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot serialize request body", e);
+        }
+    }
+
+    private static ApiResponse join(CompletableFuture<ApiResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new RuntimeException("API request failed", e.getCause());
+        }
+    }
+}
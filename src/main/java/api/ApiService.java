@@ -1,35 +1,78 @@
 package api;
 
-import io.restassured.RestAssured;
-import io.restassured.response.Response;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class ApiService {
 
-    private static final String BASE_URL = "https://example.com";
+    // Override with -Dapi.baseUrl=... to point the tests at another backend
+    private static final String DEFAULT_BASE_URL = "https://example.com";
+
+    private static volatile ApiClient client;
+
+    /**
+     * Returns the client for the configured base URL.
+     */
+    public static ApiClient client() {
+        ApiClient current = client;
+        if (current == null) {
+            current = ApiClient.forBaseUrl(System.getProperty("api.baseUrl", DEFAULT_BASE_URL));
+            client = current;
+        }
+        return current;
+    }
+
+    /**
+     * Points every ApiService call at another base URL, e.g. a local stub server.
+     *
+     * @param baseUrl the new base URL, or null to go back to the configured one
+     */
+    public static void useBaseUrl(String baseUrl) {
+        client = baseUrl == null ? null : ApiClient.forBaseUrl(baseUrl);
+    }
 
     /**
      * Authenticates the user with the given username and password.
      *
      * @param username the username for authentication
      * @param password the password for authentication
-     * @return the Response object containing the server's response
+     * @return the response of the login endpoint
+     */
+    public static ApiClient.ApiResponse authenticate(String username, String password) {
+        return client().postJson("/auth/login", createAuthPayload(username, password));
+    }
+
+    /**
+     * Authenticates without blocking, so several users can be logged in at once.
+     *
+     * @param username the username for authentication
+     * @param password the password for authentication
+     * @return a future completed with the response of the login endpoint
+     */
+    public static CompletableFuture<ApiClient.ApiResponse> authenticateAsync(String username, String password) {
+        return client().postJsonAsync("/auth/login", createAuthPayload(username, password));
+    }
+
+    /**
+     * Returns a cached auth token for the user, logging in only when no valid token is cached.
+     * Parallel tests asking for the same user share one login request.
+     *
+     * @param username the username for authentication
+     * @param password the password for authentication
+     * @return the auth token
      */
-    public static Response authenticate(String username, String password) {
-        return RestAssured.given()
-                .baseUri(BASE_URL)
-                .contentType("application/json")
-                .body(createAuthPayload(username, password))
-                .post("/auth/login");
+    public static String token(String username, String password) {
+        return TokenCache.getInstance().token(username, password);
     }
 
     /**
-     * Creates the authentication payload as a JSON string.
+     * Creates the authentication payload; it is serialized as JSON by the client.
      *
      * @param username the username
      * @param password the password
-     * @return a JSON string representing the authentication payload
+     * @return the authentication payload
      */
-    private static String createAuthPayload(String username, String password) {
-        return String.format("{ \"username\": \"%s\", \"password\": \"%s\" }", username, password);
+    private static Map<String, String> createAuthPayload(String username, String password) {
+        return Map.of("username", username, "password", password);
     }
 }
@@ -0,0 +1,354 @@
+package api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process HTTP server answering API calls from recorded responses, so API tests run offline.
+ *
+ * The server listens on an ephemeral loopback port; {@link #install()} points {@link ApiService} at
+ * it until the server is closed. Responses are looked up by method and path (with query, then
+ * without) in a replay store:
+ * <pre>
+ * {"stubs": [
+ *   {"method": "POST", "path": "/auth/login", "status": 200, "body": {"token": "stub-token"}, "delayMillis": 20}
+ * ]}
+ * </pre>
+ * A body is JSON, or text under "bodyText". Latency and error injection apply to every request, so
+ * client paths can be tested for timeouts and retries, or put under load, without a backend.
+ *
+ * In record mode every request is forwarded to a real base URL and the response is saved in the
+ * store, which is written to its file on {@link #close()}.
+ */
+public final class StubServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubServer.class);
+
+    /**
+     * A recorded response.
+     *
+     * @param body        Response body, JSON or text
+     * @param delayMillis Extra latency of this response
+     */
+    public record Stub(String method, String path, int status, Map<String, String> headers, byte[] body, long delayMillis) {
+    }
+
+    private final Map<String, Stub> stubs = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private ApiClient recordTarget;
+    private Path storeFile;
+    private HttpServer server;
+    private boolean installed;
+    private volatile long minLatencyMillis;
+    private volatile long maxLatencyMillis;
+    private volatile double errorRate;
+    private volatile int errorStatus = 503;
+
+    private StubServer() {
+    }
+
+    /**
+     * Creates a server with no stubs; add them with {@link #stub}.
+     */
+    public static StubServer create() {
+        return new StubServer();
+    }
+
+    /**
+     * Creates a server replaying a store on the classpath, e.g. "stubs/api-stubs.json".
+     */
+    public static StubServer fromResource(String resourcePath) throws IOException {
+        try (InputStream in = StubServer.class.getClassLoader().getResourceAsStream(resourcePath)) {
+            if (in == null) {
+                throw new IOException("Stub store not found: " + resourcePath);
+            }
+            StubServer server = new StubServer();
+            server.load(ApiClient.MAPPER.readTree(in));
+            return server;
+        }
+    }
+
+    /**
+     * Creates a server replaying a store file; a missing file gives an empty store.
+     */
+    public static StubServer fromFile(Path file) throws IOException {
+        StubServer server = new StubServer();
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                server.load(ApiClient.MAPPER.readTree(in));
+            }
+        }
+        return server;
+    }
+
+    /**
+     * Creates a server that forwards every request to a real backend and records the responses,
+     * adding to the responses already in the file. The file is written when the server is closed.
+     *
+     * @param file          Store file to extend
+     * @param targetBaseUrl Backend to record, e.g. "https://jsonplaceholder.typicode.com"
+     */
+    public static StubServer recording(Path file, String targetBaseUrl) throws IOException {
+        StubServer server = fromFile(file);
+        server.storeFile = file;
+        server.recordTarget = ApiClient.forBaseUrl(targetBaseUrl);
+        return server;
+    }
+
+    /**
+     * Adds or replaces the JSON response of a method and path.
+     */
+    public StubServer stub(String method, String path, int status, Object body) {
+        try {
+            byte[] bytes = body == null ? new byte[0] : ApiClient.MAPPER.writeValueAsBytes(body);
+            return add(new Stub(method.toUpperCase(), path, status, Map.of("Content-Type", "application/json"), bytes, 0));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot serialize stub body for " + path, e);
+        }
+    }
+
+    public StubServer add(Stub stub) {
+        stubs.put(key(stub.method(), stub.path()), stub);
+        return this;
+    }
+
+    /**
+     * Delays every response by a random time between min and max.
+     */
+    public StubServer latency(Duration min, Duration max) {
+        this.minLatencyMillis = min.toMillis();
+        this.maxLatencyMillis = Math.max(min.toMillis(), max.toMillis());
+        return this;
+    }
+
+    /**
+     * Answers a share of requests with an error status instead of the stub.
+     *
+     * @param rate   Share of requests to fail, 0 to 1
+     * @param status Status of the injected errors, e.g. 503
+     */
+    public StubServer errors(double rate, int status) {
+        this.errorRate = rate;
+        this.errorStatus = status;
+        return this;
+    }
+
+    /**
+     * Starts listening on a free loopback port.
+     */
+    public synchronized StubServer start() throws IOException {
+        if (server == null) {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext("/", this::handle);
+            server.setExecutor(executor);
+            server.start();
+            logger.info("Stub server on {} ({} stubs{})", baseUrl(), stubs.size(),
+                    recordTarget != null ? ", recording " + recordTarget.getBaseUri() : "");
+        }
+        return this;
+    }
+
+    /**
+     * Points ApiService at this server until it is closed.
+     */
+    public synchronized StubServer install() throws IOException {
+        start();
+        ApiService.useBaseUrl(baseUrl());
+        installed = true;
+        return this;
+    }
+
+    public String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Returns how many requests the server has answered.
+     */
+    public long requestCount() {
+        return requests.get();
+    }
+
+    public List<Stub> stubs() {
+        return List.copyOf(stubs.values());
+    }
+
+    /**
+     * Stops the server, restores the ApiService base URL and, in record mode, writes the store.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        executor.shutdown();
+        if (installed) {
+            ApiService.useBaseUrl(null);
+            installed = false;
+        }
+        if (recordTarget != null && storeFile != null) {
+            save(storeFile);
+        }
+    }
+
+    /**
+     * Writes the stubs to a store file, sorted by path and method.
+     */
+    public void save(Path file) throws IOException {
+        ObjectNode root = ApiClient.MAPPER.createObjectNode();
+        ArrayNode list = root.putArray("stubs");
+        List<Stub> sorted = new ArrayList<>(stubs.values());
+        sorted.sort(Comparator.comparing(Stub::path).thenComparing(Stub::method));
+        for (Stub stub : sorted) {
+            ObjectNode node = list.addObject();
+            node.put("method", stub.method());
+            node.put("path", stub.path());
+            node.put("status", stub.status());
+            if (!stub.headers().isEmpty()) {
+                node.putPOJO("headers", stub.headers());
+            }
+            if (stub.body().length > 0) {
+                try {
+                    node.set("body", ApiClient.MAPPER.readTree(stub.body()));
+                } catch (IOException e) {
+                    node.put("bodyText", new String(stub.body(), StandardCharsets.UTF_8));
+                }
+            }
+            if (stub.delayMillis() > 0) {
+                node.put("delayMillis", stub.delayMillis());
+            }
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        ApiClient.MAPPER.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), root);
+        logger.info("Saved {} stubs to {}", sorted.size(), file);
+    }
+
+    private void load(JsonNode root) throws IOException {
+        if (root == null) {
+            return;
+        }
+        for (JsonNode node : root.path("stubs")) {
+            Map<String, String> headers = new LinkedHashMap<>();
+            node.path("headers").fields().forEachRemaining(header -> headers.put(header.getKey(), header.getValue().asText()));
+            byte[] body;
+            if (node.has("body")) {
+                body = ApiClient.MAPPER.writeValueAsBytes(node.get("body"));
+                headers.putIfAbsent("Content-Type", "application/json");
+            } else {
+                body = node.path("bodyText").asText("").getBytes(StandardCharsets.UTF_8);
+            }
+            add(new Stub(node.path("method").asText("GET").toUpperCase(), node.path("path").asText("/"),
+                    node.path("status").asInt(200), Map.copyOf(headers), body, node.path("delayMillis").asLong(0)));
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            String method = exchange.getRequestMethod().toUpperCase();
+            String uri = exchange.getRequestURI().toString();
+            Stub stub = recordTarget != null ? record(exchange, method, uri) : lookup(method, uri);
+            sleep(latency() + (stub != null ? stub.delayMillis() : 0));
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                respond(exchange, errorStatus, Map.of("Content-Type", "application/json"),
+                        "{\"error\":\"injected\"}".getBytes(StandardCharsets.UTF_8));
+            } else if (stub == null) {
+                logger.warn("No stub for {} {}", method, uri);
+                respond(exchange, 404, Map.of("Content-Type", "application/json"),
+                        ApiClient.MAPPER.writeValueAsBytes(Map.of("error", "No stub for " + method + " " + uri)));
+            } else {
+                respond(exchange, stub.status(), stub.headers(), stub.body());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Stub server failed to answer {}", exchange.getRequestURI(), e);
+            throw e;
+        }
+    }
+
+    private Stub lookup(String method, String uri) {
+        Stub stub = stubs.get(key(method, uri));
+        int query = uri.indexOf('?');
+        return stub == null && query >= 0 ? stubs.get(key(method, uri.substring(0, query))) : stub;
+    }
+
+    private Stub record(HttpExchange exchange, String method, String uri) throws IOException {
+        byte[] requestBody = exchange.getRequestBody().readAllBytes();
+        HttpRequest.Builder request = recordTarget.request(uri)
+                .method(method, requestBody.length == 0
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(requestBody));
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null) {
+            request.header("Content-Type", contentType);
+        }
+        ApiClient.ApiResponse response = recordTarget.sendAsync(request.build()).join();
+        Map<String, String> headers = new LinkedHashMap<>();
+        response.headers().firstValue("Content-Type").ifPresent(value -> headers.put("Content-Type", value));
+        Stub stub = new Stub(method, uri, response.statusCode(), Map.copyOf(headers), response.body(), 0);
+        add(stub);
+        logger.debug("Recorded {} {} -> {}", method, uri, response.statusCode());
+        return stub;
+    }
+
+    private long latency() {
+        long min = minLatencyMillis;
+        long max = maxLatencyMillis;
+        return max > min ? ThreadLocalRandom.current().nextLong(min, max + 1) : min;
+    }
+
+    private static void respond(HttpExchange exchange, int status, Map<String, String> headers, byte[] body) throws IOException {
+        headers.forEach((name, value) -> exchange.getResponseHeaders().set(name, value));
+        boolean noBody = body.length == 0 || status == 204 || "HEAD".equals(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(status, noBody ? -1 : body.length);
+        if (!noBody) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static String key(String method, String path) {
+        return method + " " + path;
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
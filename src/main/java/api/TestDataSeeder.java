@@ -0,0 +1,275 @@
+package api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Creates test data through the API from a declarative file and deletes it again afterwards.
+ *
+ * The file lists fixtures, each with the endpoint to post to and the items to create:
+ * <pre>
+ * {"fixtures": [
+ *   {"name": "users", "endpoint": "/users", "idField": "id", "items": [{"username": "testuser"}]}
+ * ]}
+ * </pre>
+ * Fixtures are seeded in file order. A string value of the form "${users[0].id}" is replaced by that
+ * field of the create response of an item seeded earlier (here the first item of the "users" fixture),
+ * so later fixtures can point at data created by earlier ones. The items of one fixture are posted
+ * concurrently, with at most maxConcurrency requests in flight. The id of every created
+ * item is recorded, and {@link #cleanup()} deletes them in reverse fixture order
+ * (DELETE endpoint/id), again concurrently. An optional "deleteEndpoint" overrides the delete path.
+ */
+public final class TestDataSeeder implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TestDataSeeder.class);
+
+    public static final String DEFAULT_DATA_FILE = "testdata/test-data.json";
+    public static final int DEFAULT_CONCURRENCY = Integer.getInteger("api.seedConcurrency", 8);
+
+    // ${fixture[index].field}, e.g. ${users[0].id}
+    private static final Pattern REFERENCE = Pattern.compile("\\$\\{([^\\[}]+)\\[(\\d+)]\\.([^}]+)}");
+
+    /**
+     * One kind of data to create.
+     *
+     * @param name           Name used in logs
+     * @param endpoint       Path items are posted to, e.g. "/users"
+     * @param idField        Field of the create response holding the new id
+     * @param deleteEndpoint Path ids are appended to for cleanup
+     * @param items          Request bodies, one per item
+     */
+    public record Fixture(String name, String endpoint, String idField, String deleteEndpoint, List<JsonNode> items) {
+    }
+
+    /**
+     * An item created by the seeder.
+     */
+    public record Created(Fixture fixture, String id, JsonNode response) {
+    }
+
+    private final ApiClient client;
+    private final Semaphore permits;
+    private final List<Created> created = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * @param client         Client of the backend to seed
+     * @param maxConcurrency Most requests in flight at once
+     */
+    public TestDataSeeder(ApiClient client, int maxConcurrency) {
+        this.client = client;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    /**
+     * Returns a seeder for the backend ApiService currently points at.
+     */
+    public static TestDataSeeder forApiService() {
+        return new TestDataSeeder(ApiService.client(), DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Reads the fixtures of a data file on the classpath. An empty file has no fixtures.
+     *
+     * @param resourcePath Path of the data file, e.g. "testdata/test-data.json"
+     */
+    public static List<Fixture> loadFixtures(String resourcePath) throws IOException {
+        try (InputStream in = TestDataSeeder.class.getClassLoader().getResourceAsStream(resourcePath)) {
+            if (in == null) {
+                throw new IOException("Data file not found: " + resourcePath);
+            }
+            JsonNode root = ApiClient.MAPPER.readTree(in);
+            List<Fixture> fixtures = new ArrayList<>();
+            if (root == null) {
+                return fixtures;
+            }
+            for (JsonNode fixture : root.path("fixtures")) {
+                String endpoint = fixture.path("endpoint").asText(null);
+                if (endpoint == null) {
+                    throw new IOException("Fixture without endpoint in " + resourcePath + ": " + fixture);
+                }
+                List<JsonNode> items = new ArrayList<>();
+                fixture.path("items").forEach(items::add);
+                fixtures.add(new Fixture(fixture.path("name").asText(endpoint), endpoint,
+                        fixture.path("idField").asText("id"), fixture.path("deleteEndpoint").asText(endpoint),
+                        List.copyOf(items)));
+            }
+            return fixtures;
+        }
+    }
+
+    /**
+     * Seeds every fixture of a data file on the classpath.
+     */
+    public List<Created> seed(String resourcePath) throws IOException {
+        return seed(loadFixtures(resourcePath));
+    }
+
+    /**
+     * Seeds the fixtures in order. Items created before a failure stay recorded for cleanup.
+     *
+     * @return The items created by this call
+     * @throws IllegalStateException    If any item could not be created
+     * @throws IllegalArgumentException If an item refers to an item that was not seeded before it
+     */
+    public List<Created> seed(List<Fixture> fixtures) {
+        List<Created> seeded = new ArrayList<>();
+        for (Fixture fixture : fixtures) {
+            long start = System.nanoTime();
+            List<JsonNode> bodies = fixture.items().stream().map(this::resolveReferences).toList();
+            List<CompletableFuture<Created>> requests = new ArrayList<>();
+            for (JsonNode body : bodies) {
+                requests.add(withPermit(() -> client.postJsonAsync(fixture.endpoint(), body))
+                        .thenApply(response -> toCreated(fixture, response)));
+            }
+            List<String> failures = new ArrayList<>();
+            for (CompletableFuture<Created> request : requests) {
+                try {
+                    Created item = request.join();
+                    created.add(item);
+                    seeded.add(item);
+                } catch (RuntimeException e) {
+                    failures.add(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+                }
+            }
+            logger.info("Seeded {} of {} {} in {} ms", requests.size() - failures.size(), requests.size(),
+                    fixture.name(), (System.nanoTime() - start) / 1_000_000);
+            if (!failures.isEmpty()) {
+                throw new IllegalStateException("Could not seed " + failures.size() + " " + fixture.name() + ": " + failures);
+            }
+        }
+        return seeded;
+    }
+
+    /**
+     * Returns everything created so far and not yet cleaned up.
+     */
+    public List<Created> created() {
+        synchronized (created) {
+            return List.copyOf(created);
+        }
+    }
+
+    /**
+     * Deletes everything this seeder created, newest fixture first. Items that are already gone
+     * (404) count as deleted; other failures are logged and the item is kept for another try.
+     */
+    public void cleanup() {
+        List<Created> items = created();
+        long start = System.nanoTime();
+        int deleted = 0;
+        for (int end = items.size(); end > 0; ) {
+            // Delete fixture by fixture, in reverse order, so dependent data goes first
+            Fixture fixture = items.get(end - 1).fixture();
+            int begin = end;
+            while (begin > 0 && items.get(begin - 1).fixture() == fixture) {
+                begin--;
+            }
+            List<Created> batch = items.subList(begin, end);
+            List<CompletableFuture<Boolean>> requests = new ArrayList<>();
+            for (Created item : batch) {
+                requests.add(withPermit(() -> client.deleteAsync(fixture.deleteEndpoint() + "/" + item.id()))
+                        .handle((response, error) -> error == null
+                                && (response.isSuccessful() || response.statusCode() == 404)));
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                if (requests.get(i).join()) {
+                    created.remove(batch.get(i));
+                    deleted++;
+                } else {
+                    logger.warn("Could not delete {} {}", fixture.name(), batch.get(i).id());
+                }
+            }
+            end = begin;
+        }
+        logger.info("Deleted {} of {} seeded items in {} ms", deleted, items.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public void close() {
+        cleanup();
+    }
+
+    private static Created toCreated(Fixture fixture, ApiClient.ApiResponse response) {
+        if (!response.isSuccessful()) {
+            throw new IllegalStateException(fixture.endpoint() + " returned " + response.statusCode());
+        }
+        JsonNode json = response.json();
+        String id = json.path(fixture.idField()).asText(null);
+        if (id == null || id.isEmpty()) {
+            throw new IllegalStateException(fixture.endpoint() + " response has no " + fixture.idField());
+        }
+        return new Created(fixture, id, json);
+    }
+
+    /**
+     * Returns a copy of an item body with every ${fixture[index].field} reference replaced.
+     */
+    private JsonNode resolveReferences(JsonNode node) {
+        if (node.isTextual()) {
+            Matcher reference = REFERENCE.matcher(node.asText());
+            return reference.matches()
+                    ? referencedValue(reference.group(1), Integer.parseInt(reference.group(2)), reference.group(3))
+                    : node;
+        }
+        if (node.isObject()) {
+            ObjectNode copy = ApiClient.MAPPER.createObjectNode();
+            node.fields().forEachRemaining(field -> copy.set(field.getKey(), resolveReferences(field.getValue())));
+            return copy;
+        }
+        if (node.isArray()) {
+            ArrayNode copy = ApiClient.MAPPER.createArrayNode();
+            node.forEach(element -> copy.add(resolveReferences(element)));
+            return copy;
+        }
+        return node;
+    }
+
+    /**
+     * Field of the create response of the index-th item this seeder created for a fixture.
+     */
+    private JsonNode referencedValue(String fixtureName, int index, String field) {
+        List<Created> items = created().stream().filter(item -> item.fixture().name().equals(fixtureName)).toList();
+        if (index >= items.size()) {
+            throw new IllegalArgumentException("${" + fixtureName + "[" + index + "]." + field
+                    + "} refers to an item that was not seeded before it");
+        }
+        JsonNode value = items.get(index).response().path(field);
+        if (value.isMissingNode()) {
+            throw new IllegalArgumentException("${" + fixtureName + "[" + index + "]." + field
+                    + "}: create response has no " + field);
+        }
+        return value;
+    }
+
+    /**
+     * Starts a request once a permit is free and returns the permit when it completes.
+     */
+    private <T> CompletableFuture<T> withPermit(Supplier<CompletableFuture<T>> request) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        try {
+            return request.get().whenComplete((result, error) -> permits.release());
+        } catch (RuntimeException e) {
+            permits.release();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Auth tokens per (environment, user), shared by every test thread.
+ *
+ * Concurrent requests for the same user while no valid token exists share one login request
+ * (single-flight), so parallel workers logging in the same test user cause one call to
+ * /auth/login instead of one each. Tokens are handed out until EXPIRY_MARGIN before they expire, so a
+ * token never runs out in the middle of a request, and refreshed in
+ * the background ahead of expiry, as long as they were used since the last login; callers keep
+ * getting the old, still valid token until the new one arrives.
+ *
+ * Expiry is read from "expiresIn"/"expires_in" (seconds) in the login response, else from the
+ * "exp" claim of a JWT, else -Dapi.tokenTtlSeconds (default 300) is assumed.
+ */
+public final class TokenCache implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenCache.class);
+
+    public static final Duration DEFAULT_TTL = Duration.ofSeconds(Long.getLong("api.tokenTtlSeconds", 300));
+    public static final Duration DEFAULT_REFRESH_AHEAD = Duration.ofSeconds(30);
+    // A token this close to expiry is not handed out any more; a new login is made instead
+    public static final Duration EXPIRY_MARGIN = Duration.ofSeconds(5);
+
+    private static volatile TokenCache instance;
+
+    /**
+     * Logs a user in and returns the issued token.
+     */
+    @FunctionalInterface
+    public interface Authenticator {
+        CompletableFuture<Token> login(String username, String password);
+    }
+
+    /**
+     * An issued token and when it stops being valid.
+     */
+    public record Token(String value, Instant issuedAt, Instant expiresAt) {
+
+        boolean isValidFor(Duration margin) {
+            return Instant.now().plus(margin).isBefore(expiresAt);
+        }
+    }
+
+    private record Key(String environment, String username) {
+    }
+
+    private static final class Entry {
+        private String password;
+        private CompletableFuture<Token> token;
+        private volatile Instant lastUsed = Instant.now();
+
+        Entry(String password) {
+            this.password = password;
+        }
+    }
+
+    private final Authenticator authenticator;
+    private final Duration refreshAhead;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "token-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param authenticator Performs the actual login
+     * @param refreshAhead  How long before expiry a used token is refreshed in the background
+     */
+    public TokenCache(Authenticator authenticator, Duration refreshAhead) {
+        this.authenticator = authenticator;
+        this.refreshAhead = refreshAhead;
+    }
+
+    /**
+     * Returns the shared cache, which logs in through {@link ApiService}.
+     */
+    public static TokenCache getInstance() {
+        TokenCache cache = instance;
+        if (cache == null) {
+            synchronized (TokenCache.class) {
+                cache = instance;
+                if (cache == null) {
+                    cache = new TokenCache((username, password) -> ApiService.authenticateAsync(username, password)
+                            .thenApply(TokenCache::readToken), DEFAULT_REFRESH_AHEAD);
+                    instance = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns a valid token for the user in the current ApiService environment, logging in if needed.
+     */
+    public String token(String username, String password) {
+        try {
+            return tokenAsync(username, password).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Login failed for " + username, e.getCause());
+        }
+    }
+
+    public CompletableFuture<String> tokenAsync(String username, String password) {
+        return tokenAsync(ApiService.client().getBaseUri().toString(), username, password);
+    }
+
+    /**
+     * Returns a valid token for the user in an environment. Callers that arrive while a login is
+     * running for the same key get the same future.
+     *
+     * @param environment Environment name or base URL the token belongs to
+     */
+    public CompletableFuture<String> tokenAsync(String environment, String username, String password) {
+        Key key = new Key(environment, username);
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry(password));
+        entry.lastUsed = Instant.now();
+        CompletableFuture<Token> token;
+        synchronized (entry) {
+            boolean passwordChanged = !entry.password.equals(password);
+            if (passwordChanged || needsLogin(entry.token)) {
+                entry.password = password;
+                entry.token = login(key, entry);
+            }
+            token = entry.token;
+        }
+        return token.thenApply(Token::value);
+    }
+
+    /**
+     * Forgets a user's token, e.g. after the backend rejected it.
+     */
+    public void invalidate(String environment, String username) {
+        entries.remove(new Key(environment, username));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+        entries.clear();
+    }
+
+    private boolean needsLogin(CompletableFuture<Token> token) {
+        if (token == null || token.isCompletedExceptionally() || token.isCancelled()) {
+            return true;
+        }
+        // A login still in flight is shared; a finished one is reused while it is valid
+        return token.isDone() && !token.join().isValidFor(EXPIRY_MARGIN);
+    }
+
+    private CompletableFuture<Token> login(Key key, Entry entry) {
+        logger.info("Logging in {} on {}", key.username(), key.environment());
+        CompletableFuture<Token> token = authenticator.login(key.username(), entry.password);
+        token.thenAccept(issued -> scheduleRefresh(key, entry, issued));
+        return token;
+    }
+
+    private void scheduleRefresh(Key key, Entry entry, Token token) {
+        long delayMillis = Duration.between(Instant.now(), token.expiresAt().minus(refreshAhead)).toMillis();
+        if (delayMillis <= 0 || refresher.isShutdown()) {
+            return;
+        }
+        refresher.schedule(() -> refresh(key, entry, token), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void refresh(Key key, Entry entry, Token previous) {
+        if (entries.get(key) != entry || entry.lastUsed.isBefore(previous.issuedAt())) {
+            // Forgotten, or nobody used the token since it was issued: let it expire
+            return;
+        }
+        String password;
+        synchronized (entry) {
+            password = entry.password;
+        }
+        logger.debug("Refreshing token of {} on {} before it expires", key.username(), key.environment());
+        authenticator.login(key.username(), password).whenComplete((token, error) -> {
+            if (token == null) {
+                logger.warn("Background token refresh failed for {}: {}", key.username(), error.getMessage());
+                return;
+            }
+            synchronized (entry) {
+                // Dropped by invalidate()/clear(), or logged in again with another password meanwhile
+                if (entries.get(key) != entry || !password.equals(entry.password)) {
+                    return;
+                }
+                entry.token = CompletableFuture.completedFuture(token);
+            }
+            scheduleRefresh(key, entry, token);
+        });
+    }
+
+    /**
+     * Reads the token and its expiry from a login response.
+     */
+    static Token readToken(ApiClient.ApiResponse response) {
+        if (!response.isSuccessful()) {
+            throw new IllegalStateException("Login failed with status " + response.statusCode());
+        }
+        JsonNode json = response.json();
+        String value = json.path("token").asText(json.path("access_token").asText(null));
+        if (value == null || value.isEmpty()) {
+            throw new IllegalStateException("Login response has no token");
+        }
+        Instant now = Instant.now();
+        JsonNode expiresIn = json.has("expiresIn") ? json.get("expiresIn") : json.get("expires_in");
+        if (expiresIn != null && expiresIn.canConvertToLong()) {
+            return new Token(value, now, now.plusSeconds(expiresIn.asLong()));
+        }
+        Instant jwtExpiry = jwtExpiry(value);
+        return new Token(value, now, jwtExpiry != null ? jwtExpiry : now.plus(DEFAULT_TTL));
+    }
+
+    private static Instant jwtExpiry(String token) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            JsonNode claims = ApiClient.MAPPER.readTree(Base64.getUrlDecoder().decode(parts[1]));
+            return claims.has("exp") ? Instant.ofEpochSecond(claims.get("exp").asLong()) : null;
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
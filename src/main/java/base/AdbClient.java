@@ -0,0 +1,360 @@
+package base;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Talks to the local adb server over its socket protocol (localhost:5037) instead of
+ * forking an "adb" process per command. Emulator console commands ("adb emu ...") go straight
+ * to the emulator's console port, the same way the adb binary sends them.
+ *
+ * Shell commands go through one persistent "exec:sh" stream per device. Commands on the same
+ * device are serialized over that stream, each framed by an end marker carrying the exit code,
+ * and each one has its own deadline. A command that misses its deadline closes the session,
+ * because its output can no longer be told apart from the next command's; the next call reopens it.
+ */
+public class AdbClient implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdbClient.class);
+
+    public static final int DEFAULT_PORT = 5037;
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+    private static final String EMULATOR_SERIAL_PREFIX = "emulator-";
+    private static final String CONSOLE_AUTH_TOKEN_FILE = ".emulator_console_auth_token";
+
+    private static final AdbClient DEFAULT = new AdbClient("127.0.0.1", DEFAULT_PORT);
+
+    private final String host;
+    private final int port;
+    private final Map<String, ShellSession> sessions = new ConcurrentHashMap<>();
+
+    public AdbClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Returns the shared client for the adb server on localhost:5037.
+     */
+    public static AdbClient getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Output and exit status of a shell command.
+     */
+    public record ShellResult(String output, int exitCode) {
+    }
+
+    /**
+     * Returns true if an adb server answers on the configured port.
+     */
+    public boolean isServerRunning() {
+        try (Socket socket = connect()) {
+            send(socket, "host:version");
+            readStatus(socket.getInputStream(), "host:version");
+            return true;
+        } catch (IOException e) {
+            logger.debug("adb server not reachable on {}:{}: {}", host, port, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Lists the serials adb currently sees in the "device" state.
+     */
+    public List<String> devices() throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, "host:devices");
+            InputStream in = socket.getInputStream();
+            readStatus(in, "host:devices");
+            List<String> serials = new ArrayList<>();
+            for (String line : readLengthPrefixed(in).split("\n")) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length == 2 && "device".equals(parts[1])) {
+                    serials.add(parts[0]);
+                }
+            }
+            return serials;
+        }
+    }
+
+    /**
+     * Runs a shell command on the device over its persistent session.
+     *
+     * @param serial   Device serial, e.g. "emulator-5554"
+     * @param command  Shell command line
+     * @param timeout  Deadline for this command alone
+     * @return Combined stdout/stderr and the exit code
+     * @throws IOException If the device is unreachable or the deadline passes
+     */
+    public ShellResult shell(String serial, String command, Duration timeout) throws IOException {
+        ShellSession session = sessions.get(serial);
+        if (session == null || session.isClosed()) {
+            try {
+                session = sessions.compute(serial, (key, existing) ->
+                        existing != null && !existing.isClosed() ? existing : new ShellSession(key));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        try {
+            return session.execute(command, timeout);
+        } catch (IOException e) {
+            sessions.remove(serial, session);
+            throw e;
+        }
+    }
+
+    /**
+     * Sends a command to an emulator's console, as "adb -s emulator-5554 emu ..." does. The console
+     * listens on the port named in the serial and expects the token from
+     * ~/.emulator_console_auth_token when that file is not empty.
+     *
+     * @param serial   Emulator serial, e.g. "emulator-5554"
+     * @param command  Console command, e.g. "avd snapshot load golden" or "kill"
+     * @param timeout  Deadline for the whole exchange
+     * @return Reply lines before the final "OK"
+     * @throws IOException If the console is unreachable, times out or answers "KO"
+     */
+    public String emu(String serial, String command, Duration timeout) throws IOException {
+        if (!serial.startsWith(EMULATOR_SERIAL_PREFIX)) {
+            throw new IOException("Not an emulator serial: " + serial);
+        }
+        int consolePort = Integer.parseInt(serial.substring(EMULATOR_SERIAL_PREFIX.length()));
+        long deadline = System.nanoTime() + timeout.toNanos();
+        logger.debug("adb -s {} emu (timeout={}ms): {}", serial, timeout.toMillis(), command);
+
+        try (Socket socket = new Socket()) {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, consolePort), (int) CONNECT_TIMEOUT.toMillis());
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream out = socket.getOutputStream();
+
+            readConsoleReply(socket, reader, deadline);
+            String token = consoleAuthToken();
+            if (token != null) {
+                sendConsole(out, "auth " + token);
+                readConsoleReply(socket, reader, deadline);
+            }
+            sendConsole(out, command);
+            return readConsoleReply(socket, reader, deadline);
+        } catch (SocketTimeoutException e) {
+            throw new IOException("adb -s " + serial + " emu timed out after " + timeout.toMillis() + "ms: " + command, e);
+        } catch (IOException e) {
+            throw new IOException("adb -s " + serial + " emu failed: " + command + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Closes the shell session of one device, e.g. before it is shut down.
+     */
+    public void closeSession(String serial) {
+        ShellSession session = sessions.remove(serial);
+        if (session != null) {
+            session.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        sessions.keySet().forEach(this::closeSession);
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port), (int) CONNECT_TIMEOUT.toMillis());
+        socket.setSoTimeout((int) CONNECT_TIMEOUT.toMillis());
+        return socket;
+    }
+
+    /**
+     * Sends a request framed as four hex digits of length followed by the payload.
+     */
+    private static void send(Socket socket, String request) throws IOException {
+        byte[] payload = request.getBytes(StandardCharsets.UTF_8);
+        OutputStream out = socket.getOutputStream();
+        out.write(String.format("%04x", payload.length).getBytes(StandardCharsets.US_ASCII));
+        out.write(payload);
+        out.flush();
+    }
+
+    private static void readStatus(InputStream in, String request) throws IOException {
+        String status = new String(in.readNBytes(4), StandardCharsets.US_ASCII);
+        if ("OKAY".equals(status)) {
+            return;
+        }
+        if ("FAIL".equals(status)) {
+            throw new IOException("adb rejected '" + request + "': " + readLengthPrefixed(in));
+        }
+        throw new IOException("Unexpected adb reply to '" + request + "': " + status);
+    }
+
+    private static String readLengthPrefixed(InputStream in) throws IOException {
+        byte[] header = in.readNBytes(4);
+        if (header.length < 4) {
+            throw new IOException("adb closed the connection");
+        }
+        int length = Integer.parseInt(new String(header, StandardCharsets.US_ASCII), 16);
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private static void sendConsole(OutputStream out, String command) throws IOException {
+        out.write((command + "\r\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * Reads console lines up to the "OK" or "KO: ..." that ends every reply, including the banner.
+     */
+    private static String readConsoleReply(Socket socket, BufferedReader reader, long deadline) throws IOException {
+        StringBuilder output = new StringBuilder();
+        while (true) {
+            long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+            if (remainingMillis <= 0) {
+                throw new SocketTimeoutException("deadline passed");
+            }
+            socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, remainingMillis));
+            String line = reader.readLine();
+            if (line == null) {
+                throw new IOException("emulator console closed the connection");
+            }
+            // "kill" answers "OK: killing emulator, bye bye"
+            if (line.startsWith("OK")) {
+                return output.toString();
+            }
+            if (line.startsWith("KO")) {
+                throw new IOException(line);
+            }
+            output.append(line).append('\n');
+        }
+    }
+
+    private static String consoleAuthToken() throws IOException {
+        Path tokenFile = Path.of(System.getProperty("user.home"), CONSOLE_AUTH_TOKEN_FILE);
+        if (!Files.isRegularFile(tokenFile)) {
+            return null;
+        }
+        String token = Files.readString(tokenFile, StandardCharsets.UTF_8).trim();
+        // An empty token file switches console authentication off
+        return token.isEmpty() ? null : token;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.debug("Error closing adb socket", e);
+        }
+    }
+
+    /**
+     * One long-lived "exec:sh" stream to a device. exec gives a raw stream without a pty,
+     * so commands are not echoed and lines end in plain "\n".
+     */
+    private final class ShellSession implements Closeable {
+
+        private final String serial;
+        private final String marker = "__ADB_DONE_" + UUID.randomUUID().toString().replace("-", "") + "__";
+        private final Socket socket;
+        private final BufferedReader reader;
+        private final OutputStream out;
+        private volatile boolean closed;
+
+        ShellSession(String serial) {
+            this.serial = serial;
+            Socket opened = null;
+            try {
+                opened = connect();
+                send(opened, "host:transport:" + serial);
+                readStatus(opened.getInputStream(), "host:transport:" + serial);
+                send(opened, "exec:sh");
+                readStatus(opened.getInputStream(), "exec:sh");
+                reader = new BufferedReader(new InputStreamReader(opened.getInputStream(), StandardCharsets.UTF_8));
+                out = opened.getOutputStream();
+                socket = opened;
+            } catch (IOException e) {
+                closeQuietly(opened);
+                throw new UncheckedIOException("Failed to open adb shell session to " + serial, e);
+            }
+            logger.debug("Opened adb shell session to {}", serial);
+        }
+
+        synchronized ShellResult execute(String command, Duration timeout) throws IOException {
+            if (closed) {
+                throw new IOException("adb shell session to " + serial + " is closed");
+            }
+            long deadline = System.nanoTime() + timeout.toNanos();
+            logger.debug("adb -s {} shell (timeout={}ms): {}", serial, timeout.toMillis(), command);
+
+            out.write(("{ " + command + "\n} 2>&1; echo \"" + marker + " $?\"\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            StringBuilder output = new StringBuilder();
+            try {
+                while (true) {
+                    long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+                    if (remainingMillis <= 0) {
+                        throw new SocketTimeoutException("deadline passed");
+                    }
+                    socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, remainingMillis));
+                    String line = reader.readLine();
+                    if (line == null) {
+                        throw new IOException("adb shell session to " + serial + " ended");
+                    }
+                    // Output without a final newline (printf, cat) puts the marker on the same line
+                    int markerAt = line.indexOf(marker);
+                    if (markerAt >= 0) {
+                        output.append(line, 0, markerAt);
+                        int exitCode = Integer.parseInt(line.substring(markerAt + marker.length()).trim());
+                        if (exitCode != 0) {
+                            logger.warn("adb -s {} shell exited with status {}: {}", serial, exitCode, command);
+                        }
+                        return new ShellResult(output.toString(), exitCode);
+                    }
+                    output.append(line).append('\n');
+                }
+            } catch (SocketTimeoutException e) {
+                close();
+                throw new IOException("adb -s " + serial + " shell timed out after " + timeout.toMillis() + "ms: " + command, e);
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            closeQuietly(socket);
+        }
+    }
+}
@@ -6,6 +6,8 @@ import io.appium.java_client.service.local.flags.GeneralServerFlag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.URL;
+
 
 public class AppiumServerManager {
     private static final Logger logger = LoggerFactory.getLogger(AppiumServerManager.class);
@@ -28,6 +30,26 @@ public class AppiumServerManager {
         logger.info("AppiumServiceBuilder configured.");
     }
 
+    /**
+     * Builds a service for one member of an {@link AppiumServerPool}.
+     * SESSION_OVERRIDE is left off so parallel sessions can never evict each other.
+     *
+     * @param port Port to listen on, or 0 to let Appium pick any free port
+     */
+    public AppiumServerManager(int port) {
+        logger.info("Initializing AppiumServerManager on {}...", port == 0 ? "any free port" : port);
+        AppiumServiceBuilder builder = new AppiumServiceBuilder()
+                .withIPAddress("127.0.0.1")
+                .withArgument(GeneralServerFlag.LOG_LEVEL, "info");
+        if (port == 0) {
+            builder.usingAnyFreePort();
+        } else {
+            builder.usingPort(port);
+        }
+        this.service = builder.build();
+        logger.info("AppiumServiceBuilder configured.");
+    }
+
     /**
      * Starts the Appium server. If the server is already running, this will restart it.
      */
@@ -69,6 +91,20 @@ public class AppiumServerManager {
         }
     }
 
+    /**
+     * Returns true if the server answers on its /status endpoint.
+     */
+    public boolean isRunning() {
+        return service != null && service.isRunning();
+    }
+
+    /**
+     * Returns the service URL without checking whether the server is up.
+     */
+    public URL getUrl() {
+        return service.getUrl();
+    }
+
     /**
      * Returns the service URL if the server is running.
      */
@@ -0,0 +1,266 @@
+package base;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.AppiumConfig;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs several local Appium servers, each on its own free port, and hands one to each worker.
+ *
+ * A server is health-checked before it is leased and restarted if it stopped answering.
+ * Appium's node process tends to grow over long runs, so a server is also recycled
+ * (stopped and replaced by a fresh one) after a configurable number of sessions.
+ */
+public class AppiumServerPool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AppiumServerPool.class);
+
+    private final int size;
+    private final int maxSessionsPerServer;
+    private final BlockingQueue<PooledServer> idle = new LinkedBlockingQueue<>();
+    private final Map<URL, PooledServer> leased = new ConcurrentHashMap<>();
+
+    // Ports handed to servers of any pool in this JVM and not yet released
+    private static final Set<Integer> PORTS_IN_USE = new HashSet<>();
+
+    private static final class PooledServer {
+        private final AppiumServerManager manager;
+        // 0 once the port has been given back, so stopping twice cannot free another server's port
+        private int port;
+        private int sessions;
+
+        private PooledServer(AppiumServerManager manager, int port) {
+            this.manager = manager;
+            this.port = port;
+        }
+    }
+
+    /**
+     * @param size                  Number of Appium servers to run
+     * @param maxSessionsPerServer  Sessions a server may serve before it is recycled; 0 disables recycling
+     */
+    public AppiumServerPool(int size, int maxSessionsPerServer) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Appium server pool needs at least one server");
+        }
+        this.size = size;
+        this.maxSessionsPerServer = maxSessionsPerServer;
+    }
+
+    /**
+     * Builds a pool from "appium.server.pool" in appium.config.json.
+     */
+    public static AppiumServerPool fromConfig() {
+        JsonNode pool = AppiumConfig.at("/server/pool");
+        return new AppiumServerPool(pool.path("size").asInt(1), pool.path("maxSessionsPerServer").asInt(0));
+    }
+
+    /**
+     * Starts all servers concurrently and waits until every one of them is up.
+     * If any server fails to start, the ones that did start are stopped again before the error is rethrown.
+     */
+    public void start() {
+        logger.info("Starting {} Appium servers...", size);
+        ExecutorService executor = Executors.newFixedThreadPool(size);
+        try {
+            List<CompletableFuture<PooledServer>> futures = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                futures.add(CompletableFuture.supplyAsync(this::startServer, executor));
+            }
+            RuntimeException failure = null;
+            List<PooledServer> servers = new ArrayList<>();
+            for (CompletableFuture<PooledServer> future : futures) {
+                try {
+                    servers.add(future.join());
+                } catch (CompletionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException runtime
+                                ? runtime : new RuntimeException("Failed to start Appium server", e.getCause());
+                    } else {
+                        failure.addSuppressed(e.getCause());
+                    }
+                }
+            }
+            if (failure != null) {
+                logger.error("{} of {} Appium servers failed to start, stopping the others", size - servers.size(), size);
+                servers.forEach(this::stopServer);
+                throw failure;
+            }
+            idle.addAll(servers);
+        } finally {
+            executor.shutdown();
+        }
+        logger.info("Appium server pool ready with {} servers", idle.size());
+    }
+
+    /**
+     * Takes an idle server for the calling worker, waiting if all are in use.
+     * A server that fails its health check is replaced before being handed out.
+     *
+     * @param timeout How long to wait for a free server
+     * @param unit    Unit of the timeout
+     * @return URL of the server now owned by the caller
+     */
+    public URL lease(long timeout, TimeUnit unit) {
+        PooledServer server;
+        try {
+            server = idle.poll(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for an Appium server", e);
+        }
+        if (server == null) {
+            throw new RuntimeException("No Appium server became available within " + timeout + " " + unit);
+        }
+
+        if (!server.manager.isRunning()) {
+            logger.warn("Appium server {} failed its health check, replacing it", server.manager.getUrl());
+            server = replace(server);
+            if (server == null) {
+                throw new RuntimeException("Could not replace an Appium server that stopped answering");
+            }
+        }
+
+        URL url = server.manager.getUrl();
+        server.sessions++;
+        leased.put(url, server);
+        logger.info("Leased Appium server {} to thread {} (session {})",
+                url, Thread.currentThread().getName(), server.sessions);
+        return url;
+    }
+
+    /**
+     * Returns a server to the pool once the worker's session has ended,
+     * recycling it if it reached its session budget.
+     *
+     * @param url URL previously returned by {@link #lease(long, TimeUnit)}
+     */
+    public void release(URL url) {
+        PooledServer server = leased.remove(url);
+        if (server == null) {
+            throw new IllegalArgumentException("Appium server was not leased from this pool: " + url);
+        }
+        if (maxSessionsPerServer > 0 && server.sessions >= maxSessionsPerServer) {
+            logger.info("Recycling Appium server {} after {} sessions", url, server.sessions);
+            // On failure the stopped server has already been put back; the next lease retries the start
+            PooledServer fresh = replace(server);
+            if (fresh != null) {
+                idle.add(fresh);
+            }
+        } else {
+            idle.add(server);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Stops every server, including ones that are still leased.
+     */
+    @Override
+    public void close() {
+        logger.info("Stopping Appium server pool...");
+        List<PooledServer> servers = new ArrayList<>(leased.values());
+        idle.drainTo(servers);
+        leased.clear();
+        servers.forEach(this::stopServer);
+    }
+
+    /**
+     * Stops a server and starts a fresh one in its place, returned to the caller.
+     * If the new server cannot be started, the stopped one goes back to the idle queue so the
+     * pool keeps its slot, and null is returned.
+     */
+    private PooledServer replace(PooledServer server) {
+        stopServer(server);
+        try {
+            return startServer();
+        } catch (RuntimeException e) {
+            logger.error("Failed to start a replacement Appium server", e);
+            idle.add(server);
+            return null;
+        }
+    }
+
+    private PooledServer startServer() {
+        int port = allocatePort();
+        try {
+            AppiumServerManager manager = new AppiumServerManager(port);
+            manager.startServer();
+            return new PooledServer(manager, port);
+        } catch (RuntimeException e) {
+            releasePort(port);
+            throw e;
+        }
+    }
+
+    private void stopServer(PooledServer server) {
+        server.manager.stopServer();
+        if (server.port != 0) {
+            releasePort(server.port);
+            server.port = 0;
+        }
+    }
+
+    /**
+     * Picks a free loopback port that no other server of this JVM holds. Every server gets its port
+     * here instead of from usingAnyFreePort(), whose concurrent builds can pick the same port.
+     */
+    private static int allocatePort() {
+        synchronized (PORTS_IN_USE) {
+            for (int attempt = 0; attempt < 20; attempt++) {
+                int port;
+                try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+                    port = socket.getLocalPort();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("No free port for an Appium server", e);
+                }
+                if (PORTS_IN_USE.add(port)) {
+                    return port;
+                }
+            }
+            throw new IllegalStateException("No free port for an Appium server after 20 attempts");
+        }
+    }
+
+    private static void releasePort(int port) {
+        synchronized (PORTS_IN_USE) {
+            PORTS_IN_USE.remove(port);
+        }
+    }
+
+    public static void main(String[] args) {
+        try (AppiumServerPool pool = AppiumServerPool.fromConfig()) {
+            pool.start();
+
+            URL serverUrl = pool.lease(1, TimeUnit.MINUTES);
+            try {
+                logger.info("Creating a session against {}", serverUrl);
+            } finally {
+                pool.release(serverUrl);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package base;
+
+import io.appium.java_client.AppiumDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the driver of the test running on the current thread.
+ *
+ * TestNG calls test listeners on the thread that ran the test method, so listeners and
+ * utilities can look the driver up here without sharing a slot across parallel tests the way
+ * an ITestContext attribute does. Works the same for platform and virtual threads.
+ */
+public final class DriverRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(DriverRegistry.class);
+
+    private static final ThreadLocal<AppiumDriver> DRIVER = new ThreadLocal<>();
+
+    private DriverRegistry() {
+    }
+
+    /**
+     * Binds a driver to the current thread, replacing any previous one.
+     */
+    public static void register(AppiumDriver driver) {
+        DRIVER.set(driver);
+        logger.debug("Registered session {} on thread {}", driver.getSessionId(), Thread.currentThread().getName());
+    }
+
+    /**
+     * Returns the current thread's driver, or null if none is registered.
+     */
+    public static AppiumDriver get() {
+        return DRIVER.get();
+    }
+
+    /**
+     * Returns the current thread's driver.
+     *
+     * @throws IllegalStateException If no driver is registered on this thread
+     */
+    public static AppiumDriver require() {
+        AppiumDriver driver = DRIVER.get();
+        if (driver == null) {
+            throw new IllegalStateException("No driver registered on thread " + Thread.currentThread().getName());
+        }
+        return driver;
+    }
+
+    /**
+     * Removes the current thread's driver. Call this when the test's session ends so pooled
+     * threads do not keep a quit driver around.
+     */
+    public static void unregister() {
+        DRIVER.remove();
+    }
+
+    /**
+     * Removes the current thread's driver only if it is the given one.
+     */
+    public static void unregister(AppiumDriver driver) {
+        if (DRIVER.get() == driver) {
+            DRIVER.remove();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package base;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.appium.java_client.AppiumDriver;
+import io.appium.java_client.InteractsWithApps;
+import io.appium.java_client.android.AndroidDriver;
+import io.appium.java_client.ios.IOSDriver;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.SessionId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.AppiumConfig;
+import utils.ContextManager;
+
+import java.net.URL;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Keeps Appium sessions warm between test methods instead of creating and quitting one per test.
+ *
+ * Sessions are keyed by server URL plus normalized capabilities, so a lease only ever returns a
+ * session that was created with the same settings. On release the app under test is reset
+ * (restarted or cleared) and the session goes back to the pool; sessions older than
+ * maxSessionDuration are quit instead of being reused. An idle session is checked with one cheap
+ * command before it is handed out again, since the server may have ended it (newCommandTimeout).
+ *
+ * Leased drivers are registered in {@link DriverRegistry} for the leasing thread.
+ */
+public class DriverSessionPool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DriverSessionPool.class);
+
+    /**
+     * How the app is brought back to a clean state between leases.
+     */
+    public enum ResetStrategy {
+        /** terminateApp + activateApp: keeps app data, fastest. */
+        RESTART,
+        /** Android "mobile: clearApp" + activateApp: wipes app data. Falls back to RESTART on iOS. */
+        CLEAR_DATA
+    }
+
+    private final boolean reuseSessions;
+    private final Duration maxSessionDuration;
+    private final ResetStrategy resetStrategy;
+    private final Map<String, Deque<PooledSession>> idle = new ConcurrentHashMap<>();
+    private final Map<SessionId, PooledSession> leased = new ConcurrentHashMap<>();
+
+    private record PooledSession(AppiumDriver driver, String key, String appId, Instant createdAt) {
+    }
+
+    /**
+     * @param reuseSessions       If false every release quits the session (plain create/quit behaviour)
+     * @param maxSessionDuration  Age after which a session is quit instead of being reused
+     * @param resetStrategy       How app state is reset between leases
+     */
+    public DriverSessionPool(boolean reuseSessions, Duration maxSessionDuration, ResetStrategy resetStrategy) {
+        this.reuseSessions = reuseSessions;
+        this.maxSessionDuration = maxSessionDuration;
+        this.resetStrategy = resetStrategy;
+    }
+
+    /**
+     * Builds a pool from "appium.sessionManagement" in appium.config.json.
+     * Sessions are cleared between leases unless "capabilities.global.noReset" is true.
+     */
+    public static DriverSessionPool fromConfig() {
+        JsonNode sessionManagement = AppiumConfig.at("/sessionManagement");
+        boolean noReset = AppiumConfig.at("/capabilities/global/noReset").asBoolean(false);
+        return new DriverSessionPool(
+                sessionManagement.path("reuseSessions").asBoolean(false),
+                Duration.ofSeconds(sessionManagement.path("maxSessionDuration").asLong(3600)),
+                noReset ? ResetStrategy.RESTART : ResetStrategy.CLEAR_DATA);
+    }
+
+    /**
+     * Returns a warm session for these capabilities, or creates a new one.
+     *
+     * @param serverUrl     Appium server to run the session on
+     * @param capabilities  Desired capabilities
+     * @return A driver owned by the caller until {@link #release(AppiumDriver)}
+     */
+    public AppiumDriver lease(URL serverUrl, Capabilities capabilities) {
+        String key = normalize(serverUrl, capabilities);
+        Deque<PooledSession> sessions = idle.computeIfAbsent(key, k -> new ConcurrentLinkedDeque<>());
+
+        PooledSession session;
+        while ((session = sessions.pollFirst()) != null) {
+            if (isExpired(session)) {
+                logger.info("Session {} exceeded {}s, quitting it", session.driver().getSessionId(), maxSessionDuration.toSeconds());
+                quit(session);
+                continue;
+            }
+            if (!isAlive(session)) {
+                // e.g. ended by the server's newCommandTimeout while it sat idle
+                logger.info("Session {} no longer answers, quitting it", session.driver().getSessionId());
+                quit(session);
+                continue;
+            }
+            logger.info("Reusing session {} for thread {}", session.driver().getSessionId(), Thread.currentThread().getName());
+            leased.put(session.driver().getSessionId(), session);
+            DriverRegistry.register(session.driver());
+            return session.driver();
+        }
+
+        logger.info("Creating new session on {}", serverUrl);
+        AppiumDriver driver = createDriver(serverUrl, capabilities);
+        session = new PooledSession(driver, key, appId(capabilities), Instant.now());
+        leased.put(driver.getSessionId(), session);
+        DriverRegistry.register(driver);
+        return driver;
+    }
+
+    /**
+     * Returns a session to the pool after resetting the app. The session is quit instead if reuse
+     * is disabled, it is too old, or the reset fails.
+     */
+    public void release(AppiumDriver driver) {
+        DriverRegistry.unregister(driver);
+        PooledSession session = leased.remove(driver.getSessionId());
+        if (session == null) {
+            logger.warn("Releasing a session that was not leased from this pool: {}", driver.getSessionId());
+            driver.quit();
+            return;
+        }
+        if (!reuseSessions || isExpired(session)) {
+            quit(session);
+            return;
+        }
+        try {
+            resetApp(session);
+            idle.computeIfAbsent(session.key(), k -> new ConcurrentLinkedDeque<>()).offerFirst(session);
+        } catch (Exception e) {
+            logger.warn("Failed to reset app in session {}, quitting it", driver.getSessionId(), e);
+            quit(session);
+        }
+    }
+
+    /**
+     * Quits a leased session without returning it, e.g. after a test broke the device state.
+     */
+    public void invalidate(AppiumDriver driver) {
+        DriverRegistry.unregister(driver);
+        PooledSession session = leased.remove(driver.getSessionId());
+        if (session != null) {
+            quit(session);
+        } else {
+            driver.quit();
+        }
+    }
+
+    /**
+     * Quits every session, idle or leased.
+     */
+    @Override
+    public void close() {
+        List<PooledSession> all = new ArrayList<>(leased.values());
+        leased.clear();
+        idle.values().forEach(all::addAll);
+        idle.clear();
+        all.forEach(this::quit);
+        logger.info("Driver session pool closed ({} sessions quit)", all.size());
+    }
+
+    private void resetApp(PooledSession session) {
+        if (session.appId() == null) {
+            return;
+        }
+        AppiumDriver driver = session.driver();
+        ContextManager.reset(driver);
+        if (resetStrategy == ResetStrategy.CLEAR_DATA && driver instanceof AndroidDriver) {
+            driver.executeScript("mobile: clearApp", Map.of("appId", session.appId()));
+        } else if (driver instanceof InteractsWithApps apps) {
+            apps.terminateApp(session.appId());
+        }
+        if (driver instanceof InteractsWithApps apps) {
+            apps.activateApp(session.appId());
+        }
+        logger.debug("Reset app {} in session {}", session.appId(), driver.getSessionId());
+    }
+
+    private boolean isExpired(PooledSession session) {
+        return Duration.between(session.createdAt(), Instant.now()).compareTo(maxSessionDuration) >= 0;
+    }
+
+    /**
+     * Cheap round trip bound to the session (GET /session/:id/timeouts); fails once the server
+     * has ended the session.
+     */
+    private static boolean isAlive(PooledSession session) {
+        AppiumDriver driver = session.driver();
+        if (driver.getSessionId() == null) {
+            return false;
+        }
+        try {
+            driver.manage().timeouts().getImplicitWaitTimeout();
+            return true;
+        } catch (WebDriverException e) {
+            logger.debug("Liveness check of session {} failed: {}", driver.getSessionId(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void quit(PooledSession session) {
+        try {
+            session.driver().quit();
+        } catch (Exception e) {
+            logger.warn("Error quitting session {}", session.driver().getSessionId(), e);
+        }
+    }
+
+    private static AppiumDriver createDriver(URL serverUrl, Capabilities capabilities) {
+        String platform = String.valueOf(capabilities.getCapability("platformName"));
+        if ("android".equalsIgnoreCase(platform)) {
+            return new AndroidDriver(serverUrl, capabilities);
+        }
+        if ("ios".equalsIgnoreCase(platform)) {
+            return new IOSDriver(serverUrl, capabilities);
+        }
+        return new AppiumDriver(serverUrl, capabilities);
+    }
+
+    private static String appId(Capabilities capabilities) {
+        for (String name : new String[]{"appium:appPackage", "appPackage", "appium:bundleId", "bundleId"}) {
+            Object value = capabilities.getCapability(name);
+            if (value != null) {
+                return value.toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Pool key: server URL plus capabilities sorted by name, with the "appium:" prefix dropped
+     * so "deviceName" and "appium:deviceName" map to the same session.
+     */
+    static String normalize(URL serverUrl, Capabilities capabilities) {
+        Map<String, String> sorted = new TreeMap<>();
+        capabilities.asMap().forEach((name, value) ->
+                sorted.put(name.startsWith("appium:") ? name.substring("appium:".length()) : name, String.valueOf(value)));
+        return serverUrl + "|" + sorted;
+    }
+}
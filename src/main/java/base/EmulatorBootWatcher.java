@@ -0,0 +1,122 @@
+package base;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects when an emulator has finished booting without sleep-polling from the host.
+ *
+ * Each boot phase is one blocking command on the device's persistent adb shell session
+ * (see {@link AdbClient}): the session opens as soon as the device is online, then small
+ * on-device loops wait for sys.boot_completed and the package manager. Each phase is
+ * timestamped the moment its command returns.
+ */
+public class EmulatorBootWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmulatorBootWatcher.class);
+
+    private static final String[] PHASE_NAMES = {"online", "sys.boot_completed", "package manager ready"};
+    // Runs on the device; polling there costs no adb round trip or host process.
+    private static final String[] PHASE_COMMANDS = {
+            "true",
+            "while [ \"$(getprop sys.boot_completed)\" != \"1\" ]; do sleep 0.2; done",
+            "until pm path android >/dev/null 2>&1; do sleep 0.2; done"
+    };
+    // Pause before watching again while adb does not list the device yet or adbd restarts.
+    private static final long RETRY_DELAY_MILLIS = 500;
+
+    /**
+     * Time from the start of the watch until each boot phase was observed, in milliseconds.
+     * A value of -1 means the phase was not reached.
+     */
+    public record BootTimings(String serial, long deviceOnlineMillis, long bootCompletedMillis,
+                              long packageManagerReadyMillis) {
+
+        public boolean isReady() {
+            return packageManagerReadyMillis >= 0;
+        }
+    }
+
+    private final String serial;
+    private final AdbClient adb;
+
+    public EmulatorBootWatcher(String serial) {
+        this(serial, AdbClient.getDefault());
+    }
+
+    public EmulatorBootWatcher(String serial, AdbClient adb) {
+        this.serial = serial;
+        this.adb = adb;
+    }
+
+    /**
+     * Blocks until the package manager is ready or the timeout expires. If the device is not
+     * known to adb yet, or the shell session ends early because adbd restarted during boot, the
+     * watch is started again until the deadline; phases already observed keep their first timestamp.
+     *
+     * @param timeout Max time to wait for the whole boot
+     * @return Phase timings; check {@link BootTimings#isReady()} for success
+     * @throws IOException If no adb server is reachable
+     */
+    public BootTimings await(Duration timeout) throws IOException {
+        if (!adb.isServerRunning()) {
+            throw new IOException("No adb server reachable to watch " + serial + " boot");
+        }
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        long[] phases = {-1, -1, -1};
+
+        int attempt = 1;
+        while (!watch(start, deadline, phases)) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                logger.warn("Emulator {} did not boot within {} s", serial, timeout.toSeconds());
+                break;
+            }
+            attempt++;
+            logger.debug("{} not ready yet, watching again (attempt {})", serial, attempt);
+            try {
+                Thread.sleep(Math.min(RETRY_DELAY_MILLIS, remainingMillis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for emulator " + serial + " to boot", e);
+            }
+        }
+
+        return new BootTimings(serial, phases[0], phases[1], phases[2]);
+    }
+
+    /**
+     * Runs the commands of the phases not yet observed, in order, until the package manager is
+     * ready, the device cannot be reached or the deadline passes.
+     *
+     * @return True if the package manager was reported ready
+     */
+    private boolean watch(long start, long deadline, long[] phases) {
+        for (int phase = 0; phase < PHASE_COMMANDS.length; phase++) {
+            if (phases[phase] >= 0) {
+                continue;
+            }
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                return false;
+            }
+            try {
+                if (adb.shell(serial, PHASE_COMMANDS[phase], Duration.ofNanos(remainingNanos)).exitCode() != 0) {
+                    return false;
+                }
+            } catch (IOException e) {
+                // "device not found" until the emulator registers with adb, or the session dropped
+                logger.debug("Boot watch of {} interrupted: {}", serial, e.getMessage());
+                return false;
+            }
+            phases[phase] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            logger.info("{} {} after {} ms", serial, PHASE_NAMES[phase], phases[phase]);
+        }
+        return true;
+    }
+}
@@ -7,8 +7,13 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.ConnectException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -18,6 +23,9 @@ import java.util.concurrent.TimeUnit;
  *   3) Implements timeouts for process management
  *   4) Checks command availability (emulator, adb) before usage
  *   5) Provides flexible logging for different verbosity levels
+ *   6) Targets a single emulator by its console port / "emulator-<port>" serial,
+ *      so several instances can run side by side (see {@link EmulatorPool})
+ *   7) Saves, loads and invalidates quickboot snapshots for warm boots (see {@link SnapshotCache})
  */
 public class EmulatorManager {
 
@@ -26,11 +34,28 @@ public class EmulatorManager {
     private final String avdName;
     private final String sdkPath;
     private final boolean isWindows;
+    private final int consolePort;
+    private final String serial;
+    private boolean readOnly;
+    private Process emulatorProcess;
+    private EmulatorBootWatcher.BootTimings lastBootTimings;
+    private final SnapshotCache snapshotCache;
 
     // Default time (in seconds) to wait for emulator commands to complete.
 //    private static final int DEFAULT_COMMAND_TIMEOUT = 60; // 1 minute
     // Default time (in seconds) to wait for emulator to fully boot.
     private static final int DEFAULT_BOOT_TIMEOUT = 180;   // 3 minutes
+    // First console port handed out by the emulator; adb port is always console port + 1.
+    public static final int DEFAULT_CONSOLE_PORT = 5554;
+
+    // Deadlines for emulator console commands; saving a snapshot writes the whole RAM image.
+    private static final Duration SNAPSHOT_TIMEOUT = Duration.ofSeconds(120);
+    private static final Duration KILL_TIMEOUT = Duration.ofSeconds(15);
+
+    // Result of the PATH lookup per command name: true if the command is missing.
+    private static final Map<String, Boolean> MISSING_COMMANDS = new ConcurrentHashMap<>();
+    // Whether the adb server socket answered; probed on first use only.
+    private static volatile Boolean adbServerReachable;
 
     /**
      * Constructor that attempts to resolve the SDK path from environment variables
@@ -40,7 +65,25 @@ public class EmulatorManager {
      * @param partialSdkPath  A fallback path (e.g., "/Library/Android/sdk") appended to user.home on Unix
      */
     public EmulatorManager(String avdName, String partialSdkPath) {
+        this(avdName, partialSdkPath, DEFAULT_CONSOLE_PORT);
+    }
+
+    /**
+     * Same as {@link #EmulatorManager(String, String)} but pins the emulator to a console port.
+     * The emulator then registers with adb as "emulator-&lt;consolePort&gt;".
+     *
+     * @param avdName         The name of the AVD to launch
+     * @param partialSdkPath  A fallback path appended to user.home on Unix
+     * @param consolePort     Even port in the 5554-5682 range used for the emulator console
+     */
+    public EmulatorManager(String avdName, String partialSdkPath, int consolePort) {
+        if (consolePort < 5554 || consolePort > 5682 || consolePort % 2 != 0) {
+            throw new IllegalArgumentException("Console port must be an even number between 5554 and 5682: " + consolePort);
+        }
         this.avdName = avdName;
+        this.consolePort = consolePort;
+        this.serial = "emulator-" + consolePort;
+        this.snapshotCache = SnapshotCache.forAvd(avdName);
 
         // Detect whether we're on Windows.
         String osName = System.getProperty("os.name").toLowerCase();
@@ -63,7 +106,30 @@ public class EmulatorManager {
         }
 
         logger.info("Operating system detected: {}", osName);
-        logger.info("AVD Name: {}", this.avdName);
+        logger.info("AVD Name: {} (serial {})", this.avdName, this.serial);
+    }
+
+    /**
+     * Returns the adb serial of this emulator, e.g. "emulator-5554".
+     */
+    public String getSerial() {
+        return serial;
+    }
+
+    public String getAvdName() {
+        return avdName;
+    }
+
+    public int getConsolePort() {
+        return consolePort;
+    }
+
+    /**
+     * Launches the AVD with "-read-only" so several instances of the same AVD can run at once.
+     * Must be set before {@link #startEmulator(boolean, int)}.
+     */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
     }
 
     /**
@@ -99,12 +165,10 @@ public class EmulatorManager {
 
         String emulatorPath = getEmulatorExecutable();
         logger.info("Ensuring emulator binary is executable (Unix-based OS).");
-        String[] command = { "chmod", "+x", emulatorPath };
-        try {
-            executeCommand(command, 10); // 10s timeout
+        if (new File(emulatorPath).setExecutable(true)) {
             logger.info("Emulator binary permissions adjusted.");
-        } catch (IOException e) {
-            logger.warn("Failed to chmod +x the emulator (could be expected on non-Unix).", e);
+        } else {
+            logger.warn("Failed to make the emulator executable: {}", emulatorPath);
         }
     }
 
@@ -115,6 +179,103 @@ public class EmulatorManager {
      * @param bootTimeout  Max time (in seconds) to wait for sys.boot_completed
      */
     public void startEmulator(boolean quietBoot, int bootTimeout) {
+        launch(quietBoot, bootTimeout, null);
+    }
+
+    /**
+     * Warm-boots the emulator from a quickboot snapshot if one exists for the current APK and
+     * AVD config; otherwise falls back to a cold boot. After a cold boot the caller is expected to
+     * install the app, log in and then call {@link #saveSnapshot(String, Path)}.
+     *
+     * @param quietBoot     If true, uses "-no-window" (headless) on Unix-based systems
+     * @param bootTimeout   Max time (in seconds) to wait for the boot
+     * @param snapshotName  Name of the golden snapshot
+     * @param apkPath       APK the snapshot was taken with, or null if none
+     * @return true if the emulator was restored from the snapshot, false if it was cold booted
+     */
+    public boolean startEmulatorFromSnapshot(boolean quietBoot, int bootTimeout, String snapshotName, Path apkPath) {
+        if (snapshotCache.isValid(snapshotName, apkPath)) {
+            logger.info("Warm booting {} from snapshot '{}'", serial, snapshotName);
+            launch(quietBoot, bootTimeout, snapshotName);
+            return true;
+        }
+        try {
+            // Drop stale snapshot files so the emulator does not pick them up later.
+            snapshotCache.invalidate(snapshotName);
+        } catch (IOException e) {
+            logger.warn("Failed to remove stale snapshot '{}'", snapshotName, e);
+        }
+        logger.info("Cold booting {}; snapshot '{}' must be saved after setup", serial, snapshotName);
+        launch(quietBoot, bootTimeout, null);
+        return false;
+    }
+
+    /**
+     * Saves the running emulator's state as a named quickboot snapshot and records the
+     * fingerprint of the APK and AVD config it belongs to.
+     *
+     * @param snapshotName Name of the snapshot
+     * @param apkPath      APK installed on the device, or null if none
+     */
+    public void saveSnapshot(String snapshotName, Path apkPath) {
+        if (readOnly) {
+            throw new IllegalStateException("Cannot save snapshots on a read-only emulator: " + serial);
+        }
+        emuSnapshotCommand("save", snapshotName);
+        try {
+            snapshotCache.record(snapshotName, apkPath);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to record fingerprint for snapshot " + snapshotName, e);
+        }
+    }
+
+    /**
+     * Restores a snapshot on the running emulator. This takes a few seconds and is a cheap way
+     * to reset the device between tests.
+     *
+     * @param snapshotName Name of the snapshot
+     */
+    public void loadSnapshot(String snapshotName) {
+        emuSnapshotCommand("load", snapshotName);
+    }
+
+    /**
+     * Deletes a snapshot and its fingerprint so the next start cold boots.
+     * Works whether or not the emulator is running.
+     *
+     * @param snapshotName Name of the snapshot
+     */
+    public void invalidateSnapshot(String snapshotName) {
+        try {
+            if (emulatorProcess != null && emulatorProcess.isAlive()) {
+                emuSnapshotCommand("delete", snapshotName);
+                snapshotCache.forget(snapshotName);
+            } else {
+                snapshotCache.invalidate(snapshotName);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to invalidate snapshot " + snapshotName, e);
+        }
+    }
+
+    /**
+     * Sends "avd snapshot &lt;action&gt; &lt;name&gt;" to this emulator's console; a "KO" reply fails.
+     */
+    private void emuSnapshotCommand(String action, String snapshotName) {
+        logger.info("Snapshot {} '{}' on {}", action, snapshotName, serial);
+        try {
+            AdbClient.getDefault().emu(serial, "avd snapshot " + action + " " + snapshotName, SNAPSHOT_TIMEOUT);
+        } catch (IOException e) {
+            throw new RuntimeException("Snapshot " + action + " failed on " + serial, e);
+        }
+    }
+
+    /**
+     * Launches the emulator process and waits for it to boot.
+     *
+     * @param snapshotName Snapshot to load, or null for a cold boot
+     */
+    private void launch(boolean quietBoot, int bootTimeout, String snapshotName) {
         String emulatorPath = getEmulatorExecutable();
         if (checkCommandAvailability(emulatorPath)) {
             throw new RuntimeException("Emulator not found or not on PATH: " + emulatorPath);
@@ -124,8 +285,20 @@ public class EmulatorManager {
         cmdList.add(emulatorPath);
         cmdList.add("-avd");
         cmdList.add(avdName);
-        cmdList.add("-no-snapshot-load");
+        cmdList.add("-port");
+        cmdList.add(String.valueOf(consolePort));
+        if (snapshotName != null) {
+            // Keep the golden image pristine: load it but never overwrite it on exit.
+            cmdList.add("-snapshot");
+            cmdList.add(snapshotName);
+            cmdList.add("-no-snapshot-save");
+        } else {
+            cmdList.add("-no-snapshot-load");
+        }
         cmdList.add("-no-boot-anim");
+        if (readOnly) {
+            cmdList.add("-read-only");
+        }
 
         // If requested, run in headless mode (on non-Windows).
         if (quietBoot && !isWindows) {
@@ -133,77 +306,89 @@ public class EmulatorManager {
         }
 
         String[] command = cmdList.toArray(new String[0]);
-        logger.info("Attempting to launch emulator (quiet={}): {}", quietBoot, avdName);
+        logger.info("Attempting to launch emulator (quiet={}): {} as {}", quietBoot, avdName, serial);
 
         try {
             // Start emulator in a separate process; no need to waitFor() here.
+            // Output is discarded so a chatty emulator can never block on a full pipe.
             ProcessBuilder pb = new ProcessBuilder(command);
             pb.redirectErrorStream(true);
-            pb.start();
-
-            // Wait for the emulator to boot or time out.
-            waitForEmulatorToBoot(bootTimeout);
-            logger.info("Emulator started and ready.");
+            pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+            emulatorProcess = pb.start();
         } catch (IOException e) {
             logger.error("Failed to start the emulator. Check SDK path and AVD name.", e);
             throw new RuntimeException("Error starting the emulator", e);
         }
+
+        try {
+            // Wait for the emulator to boot or time out.
+            waitForEmulatorToBoot(bootTimeout);
+            logger.info("Emulator {} started and ready.", serial);
+        } catch (RuntimeException e) {
+            // Do not leave a half-booted emulator holding its console/adb ports for the rest of the run
+            destroyEmulatorProcess();
+            throw e;
+        }
     }
 
     /**
-     * Waits until 'sys.boot_completed' is 1 or the timeout is reached.
+     * Waits until the emulator is online, 'sys.boot_completed' is 1 and the package manager
+     * answers, or the timeout is reached. Detection is event-driven, see {@link EmulatorBootWatcher}.
      *
      * @param bootTimeout  Time (in seconds) to wait for the emulator to signal it's ready
+     * @throws RuntimeException If the emulator is not ready in time
      */
     private void waitForEmulatorToBoot(int bootTimeout) {
-        logger.info("Waiting (up to {}s) for emulator to boot...", bootTimeout);
-        long deadline = System.currentTimeMillis() + (bootTimeout * 1000L);
-
+        logger.info("Waiting (up to {}s) for emulator {} to boot...", bootTimeout, serial);
+        if (!isAdbServerReachable()) {
+            throw new RuntimeException("No adb server reachable to watch emulator " + serial + " boot");
+        }
         try {
-            boolean booted = false;
-            while (!booted && System.currentTimeMillis() < deadline) {
-                Thread.sleep(5000); // check every 5 seconds
-
-                /* "adb shell getprop sys.boot_completed" -> "1" if fully booted */
-                String output = executeCommand(
-                        new String[]{"adb", "shell", "getprop", "sys.boot_completed"},
-                        10 // give 10s for each 'adb' call
-                );
-                if ("1".equals(output.trim())) {
-                    booted = true;
-                }
-            }
-            if (booted) {
-                logger.info("Emulator is fully booted.");
-            } else {
-                logger.warn("Emulator did not boot within {} seconds.", bootTimeout);
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            logger.error("Interrupted while waiting for emulator boot.", e);
-            throw new RuntimeException("Interrupted while waiting for emulator to boot", e);
+            lastBootTimings = new EmulatorBootWatcher(serial).await(Duration.ofSeconds(bootTimeout));
         } catch (IOException e) {
             logger.error("Error checking emulator boot status.", e);
             throw new RuntimeException("Error during emulator boot check", e);
         }
+
+        logger.info("Boot timings for {}: online={} ms, boot_completed={} ms, package manager={} ms",
+                serial, lastBootTimings.deviceOnlineMillis(), lastBootTimings.bootCompletedMillis(),
+                lastBootTimings.packageManagerReadyMillis());
+        if (!lastBootTimings.isReady()) {
+            throw new RuntimeException("Emulator " + serial + " did not boot within " + bootTimeout + " seconds");
+        }
+        logger.info("Emulator {} is fully booted.", serial);
     }
 
     /**
-     * Sends "adb emu kill" to stop the first running emulator recognized by adb.
-     * If multiple emulators run, you may specify serial with: "adb -s emulator-5554 emu kill".
+     * Returns the phase timings of the last boot, or null if the emulator was never started.
      */
-    public void stopEmulator() {
-        logger.info("Stopping the emulator via 'adb emu kill'...");
-        if (checkCommandAvailability("adb")) {
-            logger.error("'adb' not found or not on PATH.");
-            return;
-        }
+    public EmulatorBootWatcher.BootTimings getLastBootTimings() {
+        return lastBootTimings;
+    }
 
+    /**
+     * Sends "kill" to this emulator's console, like "adb -s &lt;serial&gt; emu kill", so only this
+     * emulator is stopped, even when several instances are running.
+     */
+    public void stopEmulator() {
+        logger.info("Stopping emulator {} via 'adb emu kill'...", serial);
+        AdbClient.getDefault().closeSession(serial);
         try {
-            executeCommand(new String[]{"adb", "emu", "kill"}, 15);
-            logger.info("Stop command issued. The emulator should close shortly.");
+            AdbClient.getDefault().emu(serial, "kill", KILL_TIMEOUT);
+            logger.info("Stop command issued. Emulator {} should close shortly.", serial);
         } catch (IOException e) {
-            logger.error("Failed to stop the emulator.", e);
+            logger.error("Failed to stop emulator {}.", serial, e);
+            destroyEmulatorProcess();
+        }
+    }
+
+    /**
+     * Last resort when adb cannot reach the emulator: kill the process we launched.
+     */
+    private void destroyEmulatorProcess() {
+        if (emulatorProcess != null && emulatorProcess.isAlive()) {
+            logger.warn("Destroying emulator process for {}", serial);
+            emulatorProcess.destroy();
         }
     }
 
@@ -223,21 +408,33 @@ public class EmulatorManager {
         pb.redirectErrorStream(true);
         Process process = pb.start();
 
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader =
-                     new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
+        // Drain output on a separate thread so the timeout below applies even while
+        // the process is still writing.
+        StringBuffer output = new StringBuffer();
+        Thread drainer = new Thread(() -> {
+            try (BufferedReader reader =
+                         new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    output.append(line).append("\n");
+                }
+            } catch (IOException e) {
+                logger.debug("Output stream closed: {}", e.getMessage());
             }
-        }
+        }, "cmd-output-" + command[0]);
+        drainer.setDaemon(true);
+        drainer.start();
 
         // Wait for completion or timeout
         boolean finished;
         try {
             finished = process.waitFor(timeoutSeconds, TimeUnit.SECONDS);
+            if (finished) {
+                drainer.join(TimeUnit.SECONDS.toMillis(1));
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            process.destroyForcibly();
             throw new RuntimeException("Command execution interrupted", e);
         }
 
@@ -245,6 +442,7 @@ public class EmulatorManager {
             // Process didn't finish in time; forcibly kill it.
             process.destroyForcibly();
             logger.warn("Command timed out after {}s: {}", timeoutSeconds, String.join(" ", command));
+            throw new IOException("Command timed out after " + timeoutSeconds + "s: " + String.join(" ", command));
         }
 
         // Exit code
@@ -255,10 +453,55 @@ public class EmulatorManager {
         return output.toString();
     }
 
+    /**
+     * Runs a shell command on this emulator over the adb server socket (see {@link AdbClient}),
+     * reusing one shell session instead of forking "adb" per call. Falls back to an
+     * "adb -s &lt;serial&gt; shell" process when no adb server is reachable.
+     *
+     * @param command        Shell command line to run on the device
+     * @param timeoutSeconds Deadline for this command
+     * @return The combined stdout/stderr output
+     * @throws IOException If the command fails or times out
+     */
+    public String shell(String command, int timeoutSeconds) throws IOException {
+        if (isAdbServerReachable()) {
+            try {
+                return AdbClient.getDefault().shell(serial, command, Duration.ofSeconds(timeoutSeconds)).output();
+            } catch (ConnectException e) {
+                // The command never reached the device, so running it through the adb binary is safe
+                logger.warn("adb server refused the connection, falling back to the adb binary: {}", e.getMessage());
+                adbServerReachable = false;
+            }
+        }
+        return executeCommand(new String[]{"adb", "-s", serial, "shell", command}, timeoutSeconds);
+    }
+
+    /**
+     * Returns true if the adb server answers, starting it once with "adb start-server" if not.
+     * The server is probed once per run, not per command.
+     */
+    private boolean isAdbServerReachable() {
+        Boolean reachable = adbServerReachable;
+        if (reachable == null) {
+            AdbClient adb = AdbClient.getDefault();
+            reachable = adb.isServerRunning();
+            if (!reachable && !checkCommandAvailability("adb")) {
+                try {
+                    executeCommand(new String[]{"adb", "start-server"}, 30);
+                    reachable = adb.isServerRunning();
+                } catch (IOException e) {
+                    logger.warn("Failed to start the adb server.", e);
+                }
+            }
+            adbServerReachable = reachable;
+        }
+        return reachable;
+    }
+
     /**
      * Checks whether a given command or path is available:
      *   - If it's an absolute path, checks if the file exists and is executable.
-     *   - Otherwise, uses 'which' (Unix) or 'where' (Windows) to see if it's in the PATH.
+     *   - Otherwise, looks for an executable of that name in the PATH directories.
      *
      * @param cmd Command or absolute path
      * @return true if the command/path appears to be usable, false otherwise checkCommandAvailability
@@ -274,18 +517,22 @@ public class EmulatorManager {
             return true;
         }
 
-        // If it's not an absolute path, we rely on 'which' (Unix) or 'where' (Windows)
-        String[] checkCmd = isWindows
-                ? new String[]{"where", cmd}
-                : new String[]{"which", cmd};
-
-        try {
-            String output = executeCommand(checkCmd, 5); // short timeout for checking
-            return output.trim().isEmpty(); // If we got a result, it's available
-        } catch (IOException e) {
-            logger.warn("Failed to check command availability for '{}'.", cmd, e);
+        // PATH lookups don't change during a run, so each command is resolved once.
+        return MISSING_COMMANDS.computeIfAbsent(cmd, key -> {
+            String path = System.getenv("PATH");
+            if (path == null) {
+                return true;
+            }
+            String executable = isWindows ? key + ".exe" : key;
+            for (String dir : path.split(File.pathSeparator)) {
+                File candidate = new File(dir, executable);
+                if (candidate.isFile() && candidate.canExecute()) {
+                    return false;
+                }
+            }
+            logger.warn("'{}' not found on PATH.", key);
             return true;
-        }
+        });
     }
 
     /**
@@ -16,7 +16,11 @@ import java.util.List;
  *  - Starting the emulator (with optional "quiet" / headless mode)
  *  - Waiting for the emulator to boot
  *  - Stopping (killing) the emulator
+ *
+ * @deprecated Forks a new adb process per command without timeouts. Use {@link EmulatorManager},
+ *             which targets devices by serial and runs shell commands through {@link AdbClient}.
  */
+@Deprecated
 public class EmulatorManagerOld {
 
     private static final Logger logger = LoggerFactory.getLogger(EmulatorManagerOld.class);
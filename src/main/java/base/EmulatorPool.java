@@ -0,0 +1,210 @@
+package base;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import utils.AppiumConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boots several emulators in parallel and leases them to test threads.
+ *
+ * Each emulator gets its own console port (5554, 5556, ...) and is tracked by its
+ * "emulator-&lt;port&gt;" serial, so adb commands never hit the wrong device.
+ * The pool can be built by hand or from the "parallel" block of appium.config.json.
+ */
+public class EmulatorPool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmulatorPool.class);
+
+    // adb only scans console ports 5554..5682 for emulators.
+    private static final int MAX_EMULATORS = 64;
+
+    private final List<EmulatorManager> emulators = new ArrayList<>();
+    private final BlockingQueue<EmulatorManager> available = new LinkedBlockingQueue<>();
+    private final List<EmulatorManager> started = Collections.synchronizedList(new ArrayList<>());
+    private final Set<EmulatorManager> leased = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a pool with one emulator per AVD name. The same AVD may appear more than once,
+     * in which case all of its instances are launched read-only.
+     *
+     * @param avdNames        AVDs to launch, one entry per instance
+     * @param partialSdkPath  Fallback SDK path, see {@link EmulatorManager}
+     */
+    public EmulatorPool(List<String> avdNames, String partialSdkPath) {
+        if (avdNames.isEmpty()) {
+            throw new IllegalArgumentException("Emulator pool needs at least one AVD");
+        }
+        if (avdNames.size() > MAX_EMULATORS) {
+            throw new IllegalArgumentException("adb supports at most " + MAX_EMULATORS + " emulators, got " + avdNames.size());
+        }
+
+        Map<String, Integer> occurrences = new HashMap<>();
+        avdNames.forEach(name -> occurrences.merge(name, 1, Integer::sum));
+
+        for (int i = 0; i < avdNames.size(); i++) {
+            String avdName = avdNames.get(i);
+            int consolePort = EmulatorManager.DEFAULT_CONSOLE_PORT + (2 * i);
+            EmulatorManager manager = new EmulatorManager(avdName, partialSdkPath, consolePort);
+            manager.setReadOnly(occurrences.get(avdName) > 1);
+            emulators.add(manager);
+        }
+    }
+
+    /**
+     * Builds a pool from "appium.parallel" in appium.config.json: every Android entry of
+     * "devicePool" that names an "avd" is launched, capped at "maxInstances".
+     * When parallel execution is disabled only the first AVD is used.
+     *
+     * @param partialSdkPath Fallback SDK path, see {@link EmulatorManager}
+     */
+    public static EmulatorPool fromConfig(String partialSdkPath) {
+        JsonNode parallel = AppiumConfig.at("/parallel");
+        boolean enabled = parallel.path("enabled").asBoolean(false);
+        int maxInstances = enabled ? parallel.path("maxInstances").asInt(1) : 1;
+
+        List<String> avdNames = new ArrayList<>();
+        for (JsonNode device : parallel.path("devicePool")) {
+            if ("Android".equalsIgnoreCase(device.path("platformName").asText())
+                    && device.hasNonNull("avd")
+                    && avdNames.size() < maxInstances) {
+                avdNames.add(device.get("avd").asText());
+            }
+        }
+        logger.info("Emulator pool from config (parallel={}, maxInstances={}): {}", enabled, maxInstances, avdNames);
+        return new EmulatorPool(avdNames, partialSdkPath);
+    }
+
+    /**
+     * Boots every emulator at the same time and waits for all of them.
+     * Emulators that fail to boot are left out of the pool; it is an error only if none boot.
+     *
+     * @param quietBoot    Headless mode, see {@link EmulatorManager#startEmulator(boolean, int)}
+     * @param bootTimeout  Max time (in seconds) each emulator may take to boot
+     */
+    public void start(boolean quietBoot, int bootTimeout) {
+        logger.info("Booting {} emulators in parallel...", emulators.size());
+        ExecutorService executor = Executors.newFixedThreadPool(emulators.size());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (EmulatorManager manager : emulators) {
+                futures.add(executor.submit(() -> {
+                    // Registered before booting so close() also stops an emulator whose boot failed
+                    started.add(manager);
+                    manager.startEmulator(quietBoot, bootTimeout);
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                EmulatorManager manager = emulators.get(i);
+                try {
+                    futures.get(i).get();
+                    available.add(manager);
+                } catch (ExecutionException e) {
+                    logger.error("Emulator {} ({}) failed to boot, excluding it from the pool.",
+                            manager.getSerial(), manager.getAvdName(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while booting emulator pool", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (available.isEmpty()) {
+            throw new RuntimeException("No emulator in the pool finished booting");
+        }
+        logger.info("Emulator pool ready: {}", getAvailableSerials());
+    }
+
+    /**
+     * Takes an idle emulator out of the pool, waiting until one is released if necessary.
+     *
+     * @param timeout How long to wait for a free emulator
+     * @param unit    Unit of the timeout
+     * @return The leased emulator
+     */
+    public EmulatorManager lease(long timeout, TimeUnit unit) {
+        try {
+            EmulatorManager manager = available.poll(timeout, unit);
+            if (manager == null) {
+                throw new RuntimeException("No emulator became available within " + timeout + " " + unit);
+            }
+            leased.add(manager);
+            logger.info("Leased emulator {} to thread {}", manager.getSerial(), Thread.currentThread().getName());
+            return manager;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for an emulator", e);
+        }
+    }
+
+    /**
+     * Returns a leased emulator to the pool.
+     *
+     * @throws IllegalStateException If the emulator is not currently leased, e.g. released twice
+     */
+    public void release(EmulatorManager manager) {
+        if (!emulators.contains(manager)) {
+            throw new IllegalArgumentException("Emulator does not belong to this pool: " + manager.getSerial());
+        }
+        // A second release would queue the emulator twice and hand it to two workers at once
+        if (!leased.remove(manager)) {
+            throw new IllegalStateException("Emulator is not leased: " + manager.getSerial());
+        }
+        logger.info("Released emulator {}", manager.getSerial());
+        available.add(manager);
+    }
+
+    public int size() {
+        return emulators.size();
+    }
+
+    public List<String> getAvailableSerials() {
+        return available.stream().map(EmulatorManager::getSerial).toList();
+    }
+
+    /**
+     * Stops every emulator that was started by this pool.
+     */
+    @Override
+    public void close() {
+        logger.info("Shutting down emulator pool...");
+        synchronized (started) {
+            started.forEach(EmulatorManager::stopEmulator);
+            started.clear();
+        }
+        available.clear();
+        leased.clear();
+    }
+
+    public static void main(String[] args) {
+        try (EmulatorPool pool = EmulatorPool.fromConfig("/Library/Android/sdk")) {
+            pool.start(true, 180);
+
+            EmulatorManager emulator = pool.lease(1, TimeUnit.MINUTES);
+            try {
+                logger.info("Running tests on {}", emulator.getSerial());
+            } finally {
+                pool.release(emulator);
+            }
+        } catch (Exception e) {
+            logger.error("An error occurred while managing the emulator pool:", e);
+        }
+    }
+}
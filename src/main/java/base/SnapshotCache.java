@@ -0,0 +1,150 @@
+package base;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+/**
+ * Tracks which quickboot snapshots of an AVD are still valid.
+ *
+ * Next to every snapshot we keep a fingerprint file holding the SHA-256 of the APK that was
+ * installed and of the AVD's config.ini. A snapshot is reused only while both are unchanged;
+ * a new APK build or an edited AVD invalidates it.
+ */
+public class SnapshotCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotCache.class);
+
+    private static final String FINGERPRINT_SUFFIX = ".snapshot-fingerprint";
+
+    private final Path avdDir;
+
+    public SnapshotCache(Path avdDir) {
+        this.avdDir = avdDir;
+    }
+
+    /**
+     * Creates a cache for the given AVD, honouring ANDROID_AVD_HOME and ANDROID_USER_HOME.
+     */
+    public static SnapshotCache forAvd(String avdName) {
+        return new SnapshotCache(resolveAvdHome().resolve(avdName + ".avd"));
+    }
+
+    private static Path resolveAvdHome() {
+        String avdHome = System.getenv("ANDROID_AVD_HOME");
+        if (avdHome != null && !avdHome.isEmpty()) {
+            return Paths.get(avdHome);
+        }
+        String userHome = System.getenv("ANDROID_USER_HOME");
+        if (userHome != null && !userHome.isEmpty()) {
+            return Paths.get(userHome, "avd");
+        }
+        return Paths.get(System.getProperty("user.home"), ".android", "avd");
+    }
+
+    /**
+     * Returns true if the snapshot exists and was taken with the same APK and AVD config.
+     *
+     * @param snapshotName Name of the quickboot snapshot
+     * @param apkPath      APK installed in the snapshot, or null if none
+     */
+    public boolean isValid(String snapshotName, Path apkPath) {
+        Path fingerprintFile = fingerprintFile(snapshotName);
+        if (!Files.isDirectory(snapshotDir(snapshotName)) || !Files.isRegularFile(fingerprintFile)) {
+            logger.info("No usable snapshot '{}' in {}", snapshotName, avdDir);
+            return false;
+        }
+        try {
+            String stored = Files.readString(fingerprintFile, StandardCharsets.UTF_8).trim();
+            boolean valid = stored.equals(fingerprint(apkPath));
+            if (!valid) {
+                logger.info("Snapshot '{}' is stale (APK or AVD config changed)", snapshotName);
+            }
+            return valid;
+        } catch (IOException e) {
+            logger.warn("Could not verify snapshot '{}', treating it as stale", snapshotName, e);
+            return false;
+        }
+    }
+
+    /**
+     * Records the fingerprint of a snapshot that has just been saved.
+     */
+    public void record(String snapshotName, Path apkPath) throws IOException {
+        Files.writeString(fingerprintFile(snapshotName), fingerprint(apkPath), StandardCharsets.UTF_8);
+        logger.info("Recorded fingerprint for snapshot '{}'", snapshotName);
+    }
+
+    /**
+     * Deletes the fingerprint and the snapshot files on disk. Only call this while the
+     * emulator is not running; a running emulator should delete snapshots through its console.
+     */
+    public void invalidate(String snapshotName) throws IOException {
+        Files.deleteIfExists(fingerprintFile(snapshotName));
+        Path snapshotDir = snapshotDir(snapshotName);
+        if (Files.isDirectory(snapshotDir)) {
+            try (Stream<Path> files = Files.walk(snapshotDir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+        logger.info("Invalidated snapshot '{}'", snapshotName);
+    }
+
+    /**
+     * Removes only the fingerprint, leaving snapshot files to the emulator.
+     */
+    public void forget(String snapshotName) throws IOException {
+        Files.deleteIfExists(fingerprintFile(snapshotName));
+    }
+
+    /**
+     * SHA-256 over the APK (if any) followed by the AVD's config.ini.
+     */
+    String fingerprint(Path apkPath) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        if (apkPath != null) {
+            update(digest, apkPath);
+        }
+        Path config = avdDir.resolve("config.ini");
+        if (Files.isRegularFile(config)) {
+            update(digest, config);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, Path file) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    private Path snapshotDir(String snapshotName) {
+        return avdDir.resolve("snapshots").resolve(snapshotName);
+    }
+
+    private Path fingerprintFile(String snapshotName) {
+        return avdDir.resolve(snapshotName + FINGERPRINT_SUFFIX);
+    }
+}
@@ -0,0 +1,17 @@
+package listeners;
+
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import utils.ArtifactWriter;
+
+import java.time.Duration;
+
+public class ArtifactFlushListener implements ISuiteListener {
+    @Override
+    public void onFinish(ISuite suite) {
+        // Make sure screenshots queued by failing tests are on disk before reports are built
+        if (!ArtifactWriter.getInstance().flush(Duration.ofMinutes(1))) {
+            System.err.println("Some artifacts of suite " + suite.getName() + " were not written in time.");
+        }
+    }
+}
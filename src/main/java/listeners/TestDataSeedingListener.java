@@ -0,0 +1,61 @@
+package listeners;
+
+import api.TestDataSeeder;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestContext;
+
+import java.util.List;
+
+public class TestDataSeedingListener implements ISuiteListener {
+    // Suite attribute holding the List<TestDataSeeder.Created> of the seeded items
+    public static final String SEEDED_ATTRIBUTE = "seededTestData";
+
+    // Off by default: run with -Dapi.seed=true (and -Dapi.baseUrl=<backend>) to seed,
+    // -Dapi.seedData=<resource> for another data file
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("api.seed", "false"));
+    private static final String DATA_FILE = System.getProperty("api.seedData", TestDataSeeder.DEFAULT_DATA_FILE);
+
+    private TestDataSeeder seeder;
+
+    /**
+     * Items seeded for the test's suite, e.g. to log in as a seeded user. Empty if seeding is off or failed.
+     */
+    @SuppressWarnings("unchecked")
+    public static List<TestDataSeeder.Created> seeded(ITestContext context) {
+        Object seeded = context.getSuite().getAttribute(SEEDED_ATTRIBUTE);
+        return seeded == null ? List.of() : (List<TestDataSeeder.Created>) seeded;
+    }
+
+    /**
+     * Items seeded for one fixture of the test's suite, in data file order.
+     */
+    public static List<TestDataSeeder.Created> seeded(ITestContext context, String fixtureName) {
+        return seeded(context).stream().filter(item -> item.fixture().name().equals(fixtureName)).toList();
+    }
+
+    @Override
+    public void onStart(ISuite suite) {
+        if (!ENABLED) {
+            return;
+        }
+        // Create the suite's test data once, before any test runs
+        seeder = TestDataSeeder.forApiService();
+        try {
+            suite.setAttribute(SEEDED_ATTRIBUTE, List.copyOf(seeder.seed(DATA_FILE)));
+        } catch (Exception e) {
+            // Tests that need the data fail on their own; the rest of the suite still runs
+            System.err.println("Could not seed test data from " + DATA_FILE + " for suite " + suite.getName() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        // Delete whatever was created, including a partial seed
+        if (seeder != null) {
+            suite.removeAttribute(SEEDED_ATTRIBUTE);
+            seeder.close();
+            seeder = null;
+        }
+    }
+}
@@ -1,27 +1,24 @@
 package listeners;
 
+import base.DriverRegistry;
 import io.appium.java_client.AppiumDriver;
 import org.testng.ITestResult;
 import org.testng.TestListenerAdapter;
 import utils.ScreenshotUtils;
 
-import io.appium.java_client.AppiumDriver;
-import org.testng.ITestContext;
-import org.testng.ITestResult;
-import org.testng.TestListenerAdapter;
-
 public class TestListener extends TestListenerAdapter {
     @Override
     public void onTestFailure(ITestResult result) {
         try {
-            // Retrieve the Test Context
-            ITestContext context = result.getTestContext();
-
-            // Retrieve the AppiumDriver from the test context
-            AppiumDriver driver = (AppiumDriver) context.getAttribute("driver");
+            // Retrieve the AppiumDriver of the failed test; listeners run on the test's own thread
+            AppiumDriver driver = DriverRegistry.get();
+            if (driver == null) {
+                System.err.println("No driver registered for " + result.getName() + ", skipping screenshot.");
+                return;
+            }
 
             // Capture a screenshot
-            String screenshotPath = ScreenshotUtils.captureScreenshot(driver, result.getName());
+            String screenshotPath = ScreenshotUtils.captureScreenshot(driver, result);
 
             // Log the screenshot path
             System.out.println("Screenshot captured: " + screenshotPath);
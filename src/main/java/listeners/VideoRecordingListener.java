@@ -1,47 +1,88 @@
 package listeners;
 
+import base.DriverRegistry;
 import io.appium.java_client.AppiumDriver;
-import org.testng.ITestContext;
 import org.testng.ITestResult;
 import org.testng.TestListenerAdapter;
+import utils.ArtifactStore;
 import utils.VideoRecorder;
+import utils.VideoRingBuffer;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 
 public class VideoRecordingListener extends TestListenerAdapter {
-    private VideoRecorder recorder;
+    private static final String RECORDER_ATTRIBUTE = "videoRecorder";
+
+    // Each test records short segments on the device and keeps only the newest ones,
+    // i.e. roughly the last video.keepSeconds before the test ended
+    private static final Duration SEGMENT_LENGTH = Duration.ofSeconds(Integer.getInteger("video.segmentSeconds", 10));
+    private static final int KEEP_SEGMENTS = Math.max(1,
+            Integer.getInteger("video.keepSeconds", 30) / (int) SEGMENT_LENGTH.toSeconds());
 
     @Override
-    public void onStart(ITestContext context) {
-        // Initialize VideoRecorder and store it in the context
-        AppiumDriver driver = (AppiumDriver) context.getAttribute("driver");
-        recorder = new VideoRecorder(driver, "reports/videos");
-        recorder.startRecording();
+    public void onTestStart(ITestResult result) {
+        // Start a recording of its own for every test, on the driver registered for this thread
+        AppiumDriver driver = DriverRegistry.get();
+        if (driver == null) {
+            return;
+        }
+        try {
+            // Android on a local adb: rolling segments stay on the device until a test fails
+            VideoRingBuffer buffer = VideoRingBuffer.forDriver(driver, SEGMENT_LENGTH, KEEP_SEGMENTS);
+            if (buffer != null) {
+                buffer.start();
+                result.setAttribute(RECORDER_ATTRIBUTE, buffer);
+                return;
+            }
+            // Elsewhere: one recording on the server, only transferred if the test fails
+            VideoRecorder recorder = new VideoRecorder(driver, "reports/videos");
+            recorder.startRecording();
+            result.setAttribute(RECORDER_ATTRIBUTE, recorder);
+        } catch (Exception e) {
+            System.err.println("Could not start screen recording for " + result.getName() + ": " + e.getMessage());
+        }
     }
 
     @Override
     public void onTestSuccess(ITestResult result) {
-        // Delete video if the test passed
-        recorder.deleteVideo();
+        // Passed tests keep nothing: stop recording without transferring any video
+        discard(result);
+    }
+
+    @Override
+    public void onTestSkipped(ITestResult result) {
+        discard(result);
     }
 
     @Override
     public void onTestFailure(ITestResult result) {
-        // Stop and save the recording if the test failed
+        // Transfer the retained recording under the test's artifact path
+        Object recording = result.removeAttribute(RECORDER_ATTRIBUTE);
+        if (recording == null) {
+            return;
+        }
         try {
-            recorder.stopAndSaveRecording(result.getName());
+            ArtifactStore store = ArtifactStore.getInstance();
+            ArtifactStore.ArtifactKey key = ArtifactStore.ArtifactKey.of(result, DriverRegistry.get());
+            Path target = store.newPath(ArtifactStore.Type.VIDEO, key);
+            List<Path> saved = recording instanceof VideoRingBuffer buffer
+                    ? buffer.stopAndSave(target)
+                    : ((VideoRecorder) recording).stopAndSave(target);
+            saved.forEach(path -> store.record(ArtifactStore.Type.VIDEO, key, path));
         } catch (IOException e) {
             System.err.println("Error saving video: " + e.getMessage());
         }
     }
 
-    @Override
-    public void onFinish(ITestContext context) {
-        // Ensure the recording is stopped after all tests
-        try {
-            recorder.stopAndSaveRecording("final_recording");
-        } catch (IOException e) {
-            System.err.println("Error saving final recording: " + e.getMessage());
+    private static void discard(ITestResult result) {
+        Object recording = result.removeAttribute(RECORDER_ATTRIBUTE);
+        if (recording instanceof VideoRingBuffer buffer) {
+            buffer.discard();
+        } else if (recording instanceof VideoRecorder recorder) {
+            recorder.discardRecording();
         }
     }
 }
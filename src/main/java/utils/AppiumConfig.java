@@ -0,0 +1,67 @@
+package utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Read-only access to the "appium" block of config/appium.config.json.
+ * The file is parsed once on first use and shared by every caller.
+ */
+public final class AppiumConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(AppiumConfig.class);
+
+    public static final String DEFAULT_CONFIG_PATH = "config/appium.config.json";
+
+    private static volatile JsonNode root;
+
+    private AppiumConfig() {
+    }
+
+    /**
+     * Returns the "appium" node of the default config, or a missing node if the file is absent.
+     */
+    public static JsonNode appium() {
+        JsonNode node = root;
+        if (node == null) {
+            synchronized (AppiumConfig.class) {
+                node = root;
+                if (node == null) {
+                    node = load(DEFAULT_CONFIG_PATH).path("appium");
+                    root = node;
+                }
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Resolves a JSON pointer relative to the "appium" node, e.g. "/parallel/devicePool".
+     *
+     * @param pointer JSON pointer expression
+     * @return The node found, or a missing node
+     */
+    public static JsonNode at(String pointer) {
+        return appium().at(pointer);
+    }
+
+    private static JsonNode load(String resourcePath) {
+        try (InputStream is = AppiumConfig.class.getClassLoader().getResourceAsStream(resourcePath)) {
+            if (is == null) {
+                logger.warn("Appium config not found on classpath: {}", resourcePath);
+                return MissingNode.getInstance();
+            }
+            logger.info("Loading Appium config: {}", resourcePath);
+            return new ObjectMapper().readTree(is);
+        } catch (IOException e) {
+            logger.error("Failed to parse Appium config: {}", resourcePath, e);
+            throw new RuntimeException("Failed to parse Appium config: " + resourcePath, e);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.appium.java_client.AppiumDriver;
+import org.openqa.selenium.Capabilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.ITestResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out unique, test-qualified paths for artifacts and indexes every artifact in a manifest.
+ *
+ * Paths look like reports/screenshots/&lt;suite&gt;/&lt;class&gt;/&lt;method&gt;/attempt-1_emulator-5554_143012-123_7.png,
+ * so parallel failures can never overwrite each other. Each artifact is also appended as one JSON
+ * line to reports/artifacts-manifest.ndjson; reporting and CI uploads can read that file, or call
+ * {@link #lookup(String, String, String)}, instead of scanning reports/.
+ */
+public final class ArtifactStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArtifactStore.class);
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("HHmmss-SSS");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ArtifactStore INSTANCE = new ArtifactStore(Paths.get("reports"));
+
+    /**
+     * Kind of artifact, which decides its directory and extension.
+     */
+    public enum Type {
+        SCREENSHOT("screenshots", ".png"),
+        VIDEO("videos", ".mp4");
+
+        private final String directory;
+        private final String extension;
+
+        Type(String directory, String extension) {
+            this.directory = directory;
+            this.extension = extension;
+        }
+    }
+
+    /**
+     * Identifies the test an artifact belongs to.
+     */
+    public record ArtifactKey(String suite, String testClass, String method, int attempt, String deviceSerial) {
+
+        /**
+         * Builds a key from a TestNG result and the driver that ran it.
+         */
+        public static ArtifactKey of(ITestResult result, AppiumDriver driver) {
+            return new ArtifactKey(
+                    result.getTestContext().getSuite().getName(),
+                    result.getTestClass().getRealClass().getSimpleName(),
+                    result.getMethod().getMethodName(),
+                    Math.max(1, result.getMethod().getCurrentInvocationCount()),
+                    serialOf(driver));
+        }
+
+        /**
+         * Key for artifacts captured outside a TestNG run, named only by the caller.
+         */
+        public static ArtifactKey adHoc(String name, AppiumDriver driver) {
+            return new ArtifactKey("adhoc", "adhoc", name, 1, serialOf(driver));
+        }
+
+        String testId() {
+            return suite + "/" + testClass + "/" + method;
+        }
+    }
+
+    /**
+     * One manifest entry.
+     */
+    public record Entry(Type type, ArtifactKey key, Path path, Instant createdAt) {
+    }
+
+    private final Path root;
+    private final Path manifest;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, List<Entry>> index = new ConcurrentHashMap<>();
+    private FileChannel manifestChannel;
+    private boolean manifestLoaded;
+
+    ArtifactStore(Path root) {
+        this.root = root;
+        this.manifest = root.resolve("artifacts-manifest.ndjson");
+    }
+
+    public static ArtifactStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a path no other artifact has used or will use in this run.
+     */
+    public Path newPath(Type type, ArtifactKey key) {
+        StringBuilder fileName = new StringBuilder()
+                .append("attempt-").append(key.attempt());
+        if (key.deviceSerial() != null) {
+            fileName.append('_').append(sanitize(key.deviceSerial()));
+        }
+        fileName.append('_').append(LocalDateTime.now().format(TIMESTAMP))
+                .append('_').append(sequence.incrementAndGet())
+                .append(type.extension);
+        return root.resolve(type.directory)
+                .resolve(sanitize(key.suite()))
+                .resolve(sanitize(key.testClass()))
+                .resolve(sanitize(key.method()))
+                .resolve(fileName.toString());
+    }
+
+    /**
+     * Adds an artifact to the in-memory index and appends it to the manifest file.
+     */
+    public void record(Type type, ArtifactKey key, Path path) {
+        Entry entry = new Entry(type, key, path, Instant.now());
+        index.computeIfAbsent(key.testId(), k -> new CopyOnWriteArrayList<>()).add(entry);
+
+        ObjectNode line = MAPPER.createObjectNode()
+                .put("type", type.name())
+                .put("suite", key.suite())
+                .put("class", key.testClass())
+                .put("method", key.method())
+                .put("attempt", key.attempt())
+                .put("device", key.deviceSerial())
+                .put("path", path.toString())
+                .put("createdAt", entry.createdAt().toString());
+        appendToManifest(line.toString() + "\n");
+    }
+
+    /**
+     * Returns every artifact recorded for a test, including ones from earlier runs in the manifest.
+     */
+    public List<Entry> lookup(String suite, String testClass, String method) {
+        loadManifest();
+        return List.copyOf(index.getOrDefault(suite + "/" + testClass + "/" + method, List.of()));
+    }
+
+    private synchronized void appendToManifest(String line) {
+        try {
+            if (manifestChannel == null) {
+                Files.createDirectories(root);
+                manifestChannel = FileChannel.open(manifest,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                manifestChannel.write(buffer);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to append to artifact manifest {}", manifest, e);
+        }
+    }
+
+    /**
+     * Reads entries written by earlier runs so lookups see them too. Done once, on first lookup.
+     */
+    private synchronized void loadManifest() {
+        if (manifestLoaded) {
+            return;
+        }
+        manifestLoaded = true;
+        if (!Files.isRegularFile(manifest)) {
+            return;
+        }
+        List<Entry> previous = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                var node = MAPPER.readTree(line);
+                ArtifactKey key = new ArtifactKey(node.path("suite").asText(), node.path("class").asText(),
+                        node.path("method").asText(), node.path("attempt").asInt(1),
+                        node.path("device").isNull() ? null : node.path("device").asText());
+                previous.add(new Entry(Type.valueOf(node.path("type").asText()), key,
+                        Paths.get(node.path("path").asText()), Instant.parse(node.path("createdAt").asText())));
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not read artifact manifest {}", manifest, e);
+            return;
+        }
+        for (Entry entry : previous) {
+            List<Entry> entries = index.computeIfAbsent(entry.key().testId(), k -> new CopyOnWriteArrayList<>());
+            if (!entries.contains(entry)) {
+                entries.add(entry);
+            }
+        }
+    }
+
+    private static String serialOf(AppiumDriver driver) {
+        if (driver == null) {
+            return null;
+        }
+        Capabilities capabilities = driver.getCapabilities();
+        for (String name : new String[]{"appium:udid", "udid", "appium:deviceName", "deviceName"}) {
+            Object value = capabilities.getCapability(name);
+            if (value != null) {
+                return value.toString();
+            }
+        }
+        return null;
+    }
+
+    private static String sanitize(String name) {
+        return name == null ? "unknown" : name.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
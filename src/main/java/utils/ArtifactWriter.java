@@ -0,0 +1,190 @@
+package utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes test artifacts (screenshots, logs) to disk on a background thread.
+ *
+ * Test threads only hand over the bytes they already got from the driver. The queue is bounded:
+ * when the writer falls behind, {@link #submit} blocks, which slows tests down instead of letting
+ * memory grow. {@link #flush(Duration)} waits until everything queued is on disk; it is called at
+ * suite end by {@link listeners.ArtifactFlushListener} and from a JVM shutdown hook.
+ */
+public final class ArtifactWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArtifactWriter.class);
+
+    private static final int QUEUE_CAPACITY = 64;
+    private static final ArtifactWriter INSTANCE = new ArtifactWriter(QUEUE_CAPACITY,
+            Boolean.getBoolean("artifacts.optimizePng"));
+
+    private record Artifact(Path target, byte[] data, boolean image) {
+    }
+
+    private final BlockingQueue<Artifact> queue;
+    private final boolean optimizePng;
+    private final Set<Path> knownDirectories = ConcurrentHashMap.newKeySet();
+    private final Object flushLock = new Object();
+    private int pending;
+
+    private ArtifactWriter(int capacity, boolean optimizePng) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.optimizePng = optimizePng;
+
+        Thread worker = new Thread(this::drain, "artifact-writer");
+        worker.setDaemon(true);
+        worker.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(Duration.ofSeconds(30)), "artifact-writer-flush"));
+    }
+
+    public static ArtifactWriter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queues bytes to be written to the target file, blocking while the queue is full.
+     *
+     * @param target Destination file; parent directories are created as needed
+     * @param data   File content; must not be modified after the call
+     * @param image  True for PNG screenshots, which may be re-encoded with maximum compression
+     */
+    public void submit(Path target, byte[] data, boolean image) {
+        synchronized (flushLock) {
+            pending++;
+        }
+        try {
+            queue.put(new Artifact(target, data, image));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // Do not lose the artifact: write it on the caller's thread instead.
+            write(new Artifact(target, data, image));
+            done();
+        }
+    }
+
+    /**
+     * Waits until every artifact submitted so far has been written.
+     *
+     * @param timeout Max time to wait
+     * @return true if the queue was fully drained
+     */
+    public boolean flush(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (flushLock) {
+            while (pending > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    logger.warn("Artifact flush timed out with {} artifacts still pending", pending);
+                    return false;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(flushLock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void drain() {
+        while (true) {
+            try {
+                Artifact artifact = queue.take();
+                try {
+                    write(artifact);
+                } finally {
+                    done();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void done() {
+        synchronized (flushLock) {
+            pending--;
+            if (pending == 0) {
+                flushLock.notifyAll();
+            }
+        }
+    }
+
+    private void write(Artifact artifact) {
+        try {
+            Path parent = artifact.target().toAbsolutePath().getParent();
+            if (parent != null && knownDirectories.add(parent)) {
+                Files.createDirectories(parent);
+            }
+            byte[] data = artifact.image() && optimizePng ? optimizePng(artifact.data()) : artifact.data();
+            try (FileChannel channel = FileChannel.open(artifact.target(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            logger.debug("Wrote artifact {} ({} bytes)", artifact.target(), data.length);
+        } catch (IOException e) {
+            logger.error("Failed to write artifact {}", artifact.target(), e);
+        }
+    }
+
+    /**
+     * Re-encodes a PNG with the strongest deflate setting; keeps the original if that is not smaller.
+     */
+    private static byte[] optimizePng(byte[] png) {
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("png");
+            if (image == null || !writers.hasNext()) {
+                return png;
+            }
+            ImageWriter writer = writers.next();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(png.length);
+            try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+                writer.setOutput(ios);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                if (param.canWriteCompressed()) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    // For PNG, lower quality means stronger (still lossless) deflate.
+                    param.setCompressionQuality(0.0f);
+                }
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            return out.size() < png.length ? out.toByteArray() : png;
+        } catch (IOException e) {
+            logger.debug("PNG optimization failed, keeping original", e);
+            return png;
+        }
+    }
+}
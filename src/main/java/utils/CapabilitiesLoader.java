@@ -1,52 +1,72 @@
 package utils;
 
-import io.restassured.path.json.JsonPath;
+import com.fasterxml.jackson.core.type.TypeReference;
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.File;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Objects;
 
 public class CapabilitiesLoader {
 
     private static final Logger logger = LoggerFactory.getLogger(CapabilitiesLoader.class);
 
+    // Mappers are thread-safe once configured, so every loader shares the same two
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final ObjectMapper YAML_MAPPER = new ObjectMapper(new YAMLFactory());
+    private static final TypeReference<LinkedHashMap<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+
+    private final CapabilityProfileCache cache = CapabilityProfileCache.getInstance();
+
     public DesiredCapabilities loadCapabilities(String platform, String environment) {
-        String jsonFilePath = String.format("config/capabilities/%s.%s.json", platform.toLowerCase(), environment.toLowerCase());
-        String yamlFilePath = String.format("config/capabilities/%s-%s.yaml", platform.toLowerCase(), environment.toLowerCase());
+        return loadCapabilities(platform, environment, Map.of());
+    }
 
-        var capabilities = new DesiredCapabilities();
+    /**
+     * Whether a JSON or YAML capability file exists on the classpath for this platform/environment.
+     */
+    public boolean hasCapabilities(String platform, String environment) {
+        ClassLoader classLoader = CapabilitiesLoader.class.getClassLoader();
+        return classLoader.getResource(jsonPath(platform, environment)) != null
+                || classLoader.getResource(yamlPath(platform, environment)) != null;
+    }
+
+    /**
+     * Loads the capabilities of a platform/environment profile and applies overrides on top.
+     * Files are parsed once per JVM; each call gets its own copy.
+     *
+     * @param platform    e.g. "android" or "ios"
+     * @param environment e.g. "dev" or "prod"
+     * @param overrides   Capabilities that replace the profile's values
+     */
+    public DesiredCapabilities loadCapabilities(String platform, String environment, Map<String, ?> overrides) {
+        String jsonFilePath = jsonPath(platform, environment);
+        String yamlFilePath = yamlPath(platform, environment);
 
         try {
-            // Try to load from JSON first
-            InputStream is = CapabilitiesLoader.class.getClassLoader().getResourceAsStream(jsonFilePath);
-            if (is != null) {
-                logger.info("Loading capabilities from JSON file: {}", jsonFilePath);
-                capabilities = loadFromJson(is);
-            } else {
-                // If JSON is not found, try YAML
-                is = CapabilitiesLoader.class.getClassLoader().getResourceAsStream(yamlFilePath);
-                if (is != null) {
-                    logger.info("Loading capabilities from YAML file: {}", yamlFilePath);
-                    capabilities = loadFromYaml(yamlFilePath);
-                } else {
-                    String errorMessage = String.format("Neither JSON nor YAML file found for platform: %s, environment: %s", platform, environment);
-                    logger.error(errorMessage);
-                    throw new RuntimeException(errorMessage);
-                }
+            // Try to load from JSON first, then YAML
+            CapabilityProfileCache.Profile profile = cache.profile(jsonFilePath, this::loadFromJson);
+            if (profile == null) {
+                profile = cache.profile(yamlFilePath, this::loadFromYaml);
             }
-        } catch (Exception e) {
+            if (profile == null) {
+                String errorMessage = String.format("Neither JSON nor YAML file found for platform: %s, environment: %s", platform, environment);
+                logger.error(errorMessage);
+                throw new RuntimeException(errorMessage);
+            }
+            return cache.capabilities(platform.toLowerCase(), environment.toLowerCase(), profile, overrides);
+        } catch (RuntimeException e) {
             logger.error("Error loading capabilities for platform: {}, environment: {}", platform, environment, e);
-            throw new RuntimeException(e);
+            throw e;
         }
-
-        return capabilities;
     }
     public DesiredCapabilities loadConfig(String environment){
         // 1. Determine which config file to load
@@ -62,60 +82,57 @@ public class CapabilitiesLoader {
             default -> "config/appium.config.json"; // local
         };
 
-        var capabilities = new DesiredCapabilities();
-
         try {
-            // Try to load from JSON
-            InputStream is = CapabilitiesLoader.class.getClassLoader().getResourceAsStream(configPath);
-                logger.info("Loading configPath from JSON file: {}", configPath);
-                capabilities = loadFromJson(is);
-        } catch (Exception e) {
+            CapabilityProfileCache.Profile profile = cache.profile(configPath, this::loadFromJson);
+            if (profile == null) {
+                throw new RuntimeException("Config file not found on classpath: " + configPath);
+            }
+            return profile.toCapabilities();
+        } catch (RuntimeException e) {
             logger.error("Error loading capabilities for environment: {}", environment, e);
-            throw new RuntimeException(e);
+            throw e;
         }
+    }
 
-        return capabilities;
+    private static String jsonPath(String platform, String environment) {
+        return String.format("config/capabilities/%s.%s.json", platform.toLowerCase(), environment.toLowerCase());
     }
 
-    private DesiredCapabilities loadFromJson(InputStream inputStream) {
-        DesiredCapabilities capabilities = new DesiredCapabilities();
-        try {
-            JsonPath jsonPath = new JsonPath(inputStream);
+    private static String yamlPath(String platform, String environment) {
+        return String.format("config/capabilities/%s-%s.yaml", platform.toLowerCase(), environment.toLowerCase());
+    }
 
-            jsonPath.getMap("").forEach((key, value) -> {
-                logger.debug("Setting capability from JSON: {} = {}", key, value);
-                capabilities.setCapability(key.toString(), value);
-            });
-        } catch (Exception e) {
-            logger.error("Failed to load capabilities from JSON", e);
-            throw new RuntimeException(e);
-        }
-        return capabilities;
+    private Map<String, Object> loadFromJson(String jsonFilePath, InputStream inputStream) {
+        logger.info("Loading capabilities from JSON file: {}", jsonFilePath);
+        return parse(JSON_MAPPER, jsonFilePath, inputStream);
+    }
+
+    private Map<String, Object> loadFromYaml(String yamlFilePath, InputStream inputStream) {
+        logger.info("Loading capabilities from YAML file: {}", yamlFilePath);
+        return parse(YAML_MAPPER, yamlFilePath, inputStream);
     }
 
-    private DesiredCapabilities loadFromYaml(String yamlFilePath) {
-        DesiredCapabilities capabilities = new DesiredCapabilities();
+    /**
+     * Reads a capability file from the already-open resource stream, which also works for
+     * resources inside a jar. Values keep their types, so nested maps and lists stay structured.
+     */
+    private static Map<String, Object> parse(ObjectMapper mapper, String filePath, InputStream inputStream) {
         try {
-            // Create an ObjectMapper for YAML
-            ObjectMapper yamlMapper = new ObjectMapper(new YAMLFactory());
-            File yamlFile = new File(Objects.requireNonNull(
-                    getClass().getClassLoader().getResource(yamlFilePath),
-                    "Resource not found: " + yamlFilePath
-            ).toURI());
-
-            // Parse YAML into a Map
-            @SuppressWarnings("unchecked")
-            Map<String, Object> yamlData = yamlMapper.readValue(yamlFile, Map.class);
-
-            yamlData.forEach((key, value) -> {
-                logger.debug("Setting capability from YAML: {} = {}", key, value);
-                capabilities.setCapability(key, value instanceof String ? value : value.toString());
-            });
-        } catch (Exception e) {
-            logger.error("Failed to load capabilities from YAML file: {}", yamlFilePath, e);
+            JsonNode root = mapper.readTree(inputStream);
+            if (root == null || root.isMissingNode() || root.isNull()) {
+                logger.warn("Capability file is empty: {}", filePath);
+                return new LinkedHashMap<>();
+            }
+            if (!root.isObject()) {
+                throw new IllegalArgumentException("Capability file must contain an object: " + filePath);
+            }
+            Map<String, Object> capabilities = mapper.convertValue(root, MAP_TYPE);
+            capabilities.forEach((key, value) -> logger.debug("Setting capability from {}: {} = {}", filePath, key, value));
+            return capabilities;
+        } catch (IOException e) {
+            logger.error("Failed to load capabilities from file: {}", filePath, e);
             throw new RuntimeException(e);
         }
-        return capabilities;
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,237 @@
+package utils;
+
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed capability files, shared by every session setup in the JVM.
+ *
+ * Each classpath resource is parsed once into an immutable {@link Profile}. Callers get a fresh
+ * DesiredCapabilities copied from it, so they may modify their copy freely. A profile is reloaded
+ * only when its file's modification time changes and its SHA-256 hash differs; resources packaged
+ * in a jar cannot change and are never checked again. The time between checks is set with
+ * -Dcapabilities.reloadCheckMillis (default 1000).
+ */
+public final class CapabilityProfileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CapabilityProfileCache.class);
+
+    private static final long RECHECK_MILLIS = Long.getLong("capabilities.reloadCheckMillis", 1000L);
+    private static final CapabilityProfileCache INSTANCE = new CapabilityProfileCache();
+
+    /**
+     * Parses one capability resource from its open stream. Called only when the resource is new or
+     * may have changed; the stream is closed by the cache.
+     */
+    @FunctionalInterface
+    public interface Parser {
+        Map<String, Object> parse(String resourcePath, InputStream in) throws IOException;
+    }
+
+    /**
+     * One parsed capability file.
+     *
+     * @param resourcePath Classpath location of the file
+     * @param capabilities Capabilities in file order, read-only
+     * @param lastModified Modification time when parsed, or -1 for a resource inside a jar
+     * @param hash         SHA-256 of the file content
+     */
+    public record Profile(String resourcePath, Map<String, Object> capabilities, long lastModified, String hash) {
+
+        /**
+         * Returns a new, modifiable copy of the profile's capabilities.
+         */
+        public DesiredCapabilities toCapabilities() {
+            return new DesiredCapabilities(capabilities);
+        }
+    }
+
+    private record Key(String platform, String environment, Map<String, Object> overrides) {
+    }
+
+    private record Merged(Profile source, Map<String, Object> capabilities) {
+    }
+
+    private static final class Entry {
+        private final Profile profile;
+        private final Path file;
+        private final long nextCheck;
+
+        Entry(Profile profile, Path file, long nextCheck) {
+            this.profile = profile;
+            this.file = file;
+            this.nextCheck = nextCheck;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Key, Merged> merged = new ConcurrentHashMap<>();
+
+    private CapabilityProfileCache() {
+    }
+
+    public static CapabilityProfileCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the profile of a classpath resource, parsing it on first use or after it changed.
+     *
+     * @param resourcePath Classpath location of the capability file
+     * @param parser       Turns the file into a capability map
+     * @return The profile, or null if the resource does not exist
+     */
+    public Profile profile(String resourcePath, Parser parser) {
+        Entry entry = entries.get(resourcePath);
+        if (entry != null && System.currentTimeMillis() < entry.nextCheck) {
+            return entry.profile;
+        }
+        Entry refreshed = entries.compute(resourcePath, (path, current) -> refresh(path, current, parser));
+        return refreshed == null ? null : refreshed.profile;
+    }
+
+    /**
+     * Returns the capabilities of a platform/environment profile with overrides applied on top.
+     * The merged result is cached per (platform, environment, overrides) until the profile changes.
+     *
+     * @param platform    Platform name, part of the cache key
+     * @param environment Environment name, part of the cache key
+     * @param profile     Profile to start from
+     * @param overrides   Capabilities that replace the profile's values, may be empty
+     */
+    public DesiredCapabilities capabilities(String platform, String environment, Profile profile,
+                                            Map<String, ?> overrides) {
+        Key key = new Key(platform, environment, freeze(overrides));
+        Merged result = merged.compute(key, (k, current) -> {
+            if (current != null && current.source().hash().equals(profile.hash())) {
+                return current;
+            }
+            Map<String, Object> combined = new LinkedHashMap<>(profile.capabilities());
+            combined.putAll(k.overrides());
+            return new Merged(profile, Collections.unmodifiableMap(combined));
+        });
+        return new DesiredCapabilities(result.capabilities());
+    }
+
+    /**
+     * Drops every cached profile, e.g. after config files were rewritten by a test.
+     */
+    public void clear() {
+        entries.clear();
+        merged.clear();
+    }
+
+    private Entry refresh(String resourcePath, Entry current, Parser parser) {
+        long nextCheck = System.currentTimeMillis() + RECHECK_MILLIS;
+        if (current != null && current.file == null) {
+            // Packaged in a jar, so it cannot have changed
+            return new Entry(current.profile, null, Long.MAX_VALUE);
+        }
+        URL url = CapabilityProfileCache.class.getClassLoader().getResource(resourcePath);
+        if (url == null) {
+            return null;
+        }
+        try {
+            Path file = toFile(url);
+            long lastModified = file != null ? Files.getLastModifiedTime(file).toMillis() : -1;
+            if (current != null && current.profile.lastModified() == lastModified) {
+                return new Entry(current.profile, file, nextCheck);
+            }
+
+            // One read both parses and hashes the file; jar entries are streamed in place
+            MessageDigest digest = sha256();
+            Map<String, Object> capabilities;
+            try (InputStream in = new DigestInputStream(url.openStream(), digest)) {
+                capabilities = parser.parse(resourcePath, new FilterInputStream(in) {
+                    @Override
+                    public void close() {
+                        // Parsers may close their input; the rest still has to be hashed below
+                    }
+                });
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            if (current != null && current.profile.hash().equals(hash)) {
+                // Touched but not changed: keep the parsed profile and every merge built from it
+                Profile same = new Profile(resourcePath, current.profile.capabilities(), lastModified, hash);
+                return new Entry(same, file, nextCheck);
+            }
+
+            if (current != null) {
+                logger.info("Capability file changed, reloaded: {}", resourcePath);
+            }
+            Profile profile = new Profile(resourcePath, freeze(capabilities), lastModified, hash);
+            return new Entry(profile, file, file == null ? Long.MAX_VALUE : nextCheck);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load capability profile: " + resourcePath, e);
+        }
+    }
+
+    /**
+     * Returns the file behind a classpath URL, or null when the resource lives inside a jar.
+     */
+    private static Path toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return Paths.get(url.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Copies a map into a read-only one, recursively, so shared profiles cannot be modified.
+     */
+    private static Map<String, Object> freeze(Map<String, ?> map) {
+        if (map == null || map.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Object> copy = new LinkedHashMap<>();
+        map.forEach((key, value) -> copy.put(key, freezeValue(value)));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object freezeValue(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            return freeze((Map<String, ?>) map);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            list.forEach(item -> copy.add(freezeValue(item)));
+            return Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,243 @@
+package utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds the capabilities of one device from every place they are configured, in this order
+ * (later layers win):
+ * <ol>
+ *     <li>global - appium.capabilities.global in appium.config.json</li>
+ *     <li>driver - plain fields of appium.drivers.&lt;driver&gt;</li>
+ *     <li>device - the matching entry of appium.drivers.&lt;driver&gt;.emulators/simulators/realDevices</li>
+ *     <li>environment - config/capabilities/&lt;platform&gt;.&lt;env&gt;.json or -&lt;env&gt;.yaml</li>
+ *     <li>overrides - the APPIUM_CAPABILITIES env variable (a JSON object), then -Dcapability.&lt;name&gt;=value</li>
+ * </ol>
+ * Every name gets the W3C "appium:" prefix unless it is a standard W3C capability, so "noReset" and
+ * "appium:noReset" from different layers end up as one entry. The merged set is validated once and
+ * memoized per (driver, device, environment); overrides are read at that time.
+ */
+public final class CapabilityResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(CapabilityResolver.class);
+
+    public static final String SYSTEM_PROPERTY_PREFIX = "capability.";
+    public static final String OVERRIDES_ENV = "APPIUM_CAPABILITIES";
+
+    private static final Set<String> W3C_CAPABILITIES = Set.of(
+            "browserName", "browserVersion", "platformName", "acceptInsecureCerts", "pageLoadStrategy",
+            "proxy", "setWindowRect", "timeouts", "strictFileInteractability", "unhandledPromptBehavior",
+            "webSocketUrl");
+    private static final List<String> DEVICE_LISTS = List.of("emulators", "simulators", "realDevices");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<LinkedHashMap<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+    private static final CapabilityResolver INSTANCE = new CapabilityResolver();
+
+    private record Key(String driver, String device, String environment) {
+    }
+
+    private final CapabilitiesLoader loader = new CapabilitiesLoader();
+    private final Map<Key, Map<String, Object>> resolved = new ConcurrentHashMap<>();
+
+    private CapabilityResolver() {
+    }
+
+    public static CapabilityResolver getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the merged capabilities of a device as a new, modifiable copy.
+     *
+     * @param driver      Driver block in appium.config.json, e.g. "uiautomator2" or "xcuitest"
+     * @param device      deviceName, avd or udid of the device entry; null for the driver's first device
+     * @param environment Environment of the capability file, e.g. "dev"
+     */
+    public DesiredCapabilities resolve(String driver, String device, String environment) {
+        Map<String, Object> capabilities = resolved.computeIfAbsent(new Key(driver, device, environment), this::merge);
+        return new DesiredCapabilities(capabilities);
+    }
+
+    /**
+     * Appium server URL from appium.server, overridable with APPIUM_HOST/APPIUM_PORT
+     * or -Dappium.host/-Dappium.port.
+     */
+    public URL serverUrl() {
+        JsonNode server = AppiumConfig.at("/server");
+        String host = firstNonNull(System.getProperty("appium.host"), System.getenv("APPIUM_HOST"),
+                server.path("host").asText("127.0.0.1"));
+        String port = firstNonNull(System.getProperty("appium.port"), System.getenv("APPIUM_PORT"),
+                server.path("port").asText("4723"));
+        try {
+            return URI.create(String.format("http://%s:%s", host, port)).toURL();
+        } catch (MalformedURLException | IllegalArgumentException e) {
+            throw new RuntimeException("Invalid Appium server address: " + host + ":" + port, e);
+        }
+    }
+
+    /**
+     * Forgets every resolved device, e.g. after overrides were changed in the same JVM.
+     */
+    public void clear() {
+        resolved.clear();
+    }
+
+    /**
+     * Adds the "appium:" vendor prefix to non-standard capability names.
+     */
+    public static String w3cName(String name) {
+        return name.contains(":") || W3C_CAPABILITIES.contains(name) ? name : "appium:" + name;
+    }
+
+    private Map<String, Object> merge(Key key) {
+        Map<String, Object> capabilities = new LinkedHashMap<>();
+        JsonNode driverNode = AppiumConfig.at("/drivers/" + key.driver());
+        if (driverNode.isMissingNode()) {
+            throw new IllegalArgumentException("No driver '" + key.driver() + "' in " + AppiumConfig.DEFAULT_CONFIG_PATH);
+        }
+
+        // 1. global, 2. driver, 3. device
+        apply(capabilities, toMap(AppiumConfig.at("/capabilities/global")));
+        Map<String, Object> driverDefaults = toMap(driverNode);
+        DEVICE_LISTS.forEach(driverDefaults::remove);
+        apply(capabilities, driverDefaults);
+        apply(capabilities, toMap(findDevice(driverNode, key)));
+
+        // 4. environment file of the device's platform, if there is one; a broken file is an error
+        Object platformName = capabilities.get("platformName");
+        if (key.environment() != null && platformName != null) {
+            if (loader.hasCapabilities(platformName.toString(), key.environment())) {
+                apply(capabilities, loader.loadCapabilities(platformName.toString(), key.environment()).asMap());
+            } else {
+                logger.debug("No environment capability file for {}/{}", platformName, key.environment());
+            }
+        }
+
+        // 5. overrides
+        apply(capabilities, envOverrides());
+        apply(capabilities, systemPropertyOverrides());
+
+        validate(key, capabilities);
+        logger.info("Resolved capabilities for {}/{}/{}: {}", key.driver(), key.device(), key.environment(), capabilities);
+        return Collections.unmodifiableMap(capabilities);
+    }
+
+    private static JsonNode findDevice(JsonNode driverNode, Key key) {
+        for (String list : DEVICE_LISTS) {
+            for (JsonNode device : driverNode.path(list)) {
+                if (key.device() == null
+                        || key.device().equals(device.path("deviceName").asText(null))
+                        || key.device().equals(device.path("avd").asText(null))
+                        || key.device().equals(device.path("udid").asText(null))) {
+                    return device;
+                }
+            }
+        }
+        throw new IllegalArgumentException("No device '" + key.device() + "' configured for driver " + key.driver());
+    }
+
+    private static void apply(Map<String, Object> capabilities, Map<String, ?> layer) {
+        layer.forEach((name, value) -> {
+            if (value == null) {
+                capabilities.remove(w3cName(name));
+            } else {
+                capabilities.put(w3cName(name), value);
+            }
+        });
+    }
+
+    private static Map<String, Object> envOverrides() {
+        String json = System.getenv(OVERRIDES_ENV);
+        if (json == null || json.isBlank()) {
+            return Map.of();
+        }
+        try {
+            return MAPPER.readValue(json, MAP_TYPE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(OVERRIDES_ENV + " must be a JSON object", e);
+        }
+    }
+
+    private static Map<String, Object> systemPropertyOverrides() {
+        Map<String, Object> overrides = new LinkedHashMap<>();
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(SYSTEM_PROPERTY_PREFIX))
+                .sorted()
+                .forEach(name -> overrides.put(name.substring(SYSTEM_PROPERTY_PREFIX.length()),
+                        parseScalar(System.getProperty(name))));
+        return overrides;
+    }
+
+    /**
+     * Keeps booleans and numbers typed when they come from a string, e.g. -Dcapability.noReset=false.
+     */
+    private static Object parseScalar(String value) {
+        if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+            return Boolean.parseBoolean(value);
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return value;
+        }
+    }
+
+    private static void validate(Key key, Map<String, Object> capabilities) {
+        List<String> problems = new ArrayList<>();
+        Object platform = capabilities.get("platformName");
+        if (platform == null || platform.toString().isBlank()) {
+            problems.add("platformName is missing");
+        }
+        if (!(capabilities.get("appium:automationName") instanceof String automation) || automation.isBlank()) {
+            problems.add("appium:automationName is missing");
+        }
+        for (String name : capabilities.keySet()) {
+            if (name.isBlank() || name.endsWith(":")) {
+                problems.add("invalid capability name '" + name + "'");
+            }
+        }
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Invalid capabilities for " + key + ": " + String.join(", ", problems));
+        }
+    }
+
+    private static Map<String, Object> toMap(JsonNode node) {
+        if (node == null || !node.isObject()) {
+            return new LinkedHashMap<>();
+        }
+        return MAPPER.convertValue(node, MAP_TYPE);
+    }
+
+    private static String firstNonNull(String... values) {
+        for (String value : values) {
+            if (value != null && !value.isBlank()) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) {
+        CapabilityResolver resolver = CapabilityResolver.getInstance();
+        System.out.println("Server: " + resolver.serverUrl());
+        System.out.println("Capabilities: " + resolver.resolve("uiautomator2", null, "dev"));
+    }
+}
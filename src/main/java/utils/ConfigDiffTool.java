@@ -0,0 +1,228 @@
+package utils;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Flattens several JSON config files in parallel and writes the differences between them as NDJSON.
+ *
+ * The first file is the baseline; every other file is compared against it, leaf by leaf. Each
+ * difference becomes one line like
+ * {"base":"config/appium.config.json","target":"config/appium.config.staging.json","change":"CHANGED","path":"appium.server.port","from":"4723","to":"4724"}.
+ * "base" and "target" are the sources exactly as they were passed in. Values are compared as text.
+ *
+ * Usage: ConfigDiffTool [--out reports/config-diff.ndjson] [--threads N] baseline.json other.json...
+ * Arguments that are not files on disk are looked up on the classpath, e.g. config/appium.config.json.
+ */
+public class ConfigDiffTool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigDiffTool.class);
+
+    public static final String DEFAULT_OUTPUT = "reports/config-diff.ndjson";
+
+    public enum Change {
+        ADDED, REMOVED, CHANGED
+    }
+
+    /**
+     * One differing leaf between the baseline and a target file.
+     */
+    public record Difference(String base, String target, Change change, String path, String from, String to) {
+    }
+
+    /**
+     * Flattened leaves of one file, in document order.
+     */
+    public record FlatConfig(String name, Map<String, String> values) {
+    }
+
+    private final ForkJoinPool pool;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final JsonStreamFlattener flattener = new JsonStreamFlattener(jsonFactory);
+
+    /**
+     * @param parallelism Number of files flattened and compared at the same time
+     */
+    public ConfigDiffTool(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Flattens every source in parallel.
+     *
+     * @param sources File paths or classpath resources
+     * @return Flattened configs, in the order given
+     */
+    public List<FlatConfig> flattenAll(List<String> sources) throws IOException {
+        return inPool(() -> sources.parallelStream().map(this::flattenUnchecked).toList());
+    }
+
+    /**
+     * Compares every config against the first one, in parallel.
+     *
+     * @return Differences grouped by target, then in document order
+     */
+    public List<Difference> diff(List<FlatConfig> configs) throws IOException {
+        if (configs.size() < 2) {
+            return List.of();
+        }
+        FlatConfig base = configs.get(0);
+        List<List<Difference>> perTarget = inPool(() -> configs.subList(1, configs.size()).parallelStream()
+                .map(target -> diff(base, target))
+                .toList());
+        List<Difference> differences = new ArrayList<>();
+        perTarget.forEach(differences::addAll);
+        return differences;
+    }
+
+    /**
+     * Compares one target config against the baseline.
+     */
+    public static List<Difference> diff(FlatConfig base, FlatConfig target) {
+        List<Difference> differences = new ArrayList<>();
+        base.values().forEach((path, from) -> {
+            String to = target.values().get(path);
+            if (to == null && !target.values().containsKey(path)) {
+                differences.add(new Difference(base.name(), target.name(), Change.REMOVED, path, from, null));
+            } else if (!from.equals(to)) {
+                differences.add(new Difference(base.name(), target.name(), Change.CHANGED, path, from, to));
+            }
+        });
+        target.values().forEach((path, to) -> {
+            if (!base.values().containsKey(path)) {
+                differences.add(new Difference(base.name(), target.name(), Change.ADDED, path, null, to));
+            }
+        });
+        return differences;
+    }
+
+    /**
+     * Writes differences as one compact JSON object per line.
+     */
+    public void writeNdjson(List<Difference> differences, Path output) throws IOException {
+        Path parent = output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (OutputStream out = Files.newOutputStream(output);
+             JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8)) {
+            // Root values separated by a newline instead of a space
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+            for (Difference difference : differences) {
+                generator.writeStartObject();
+                generator.writeStringField("base", difference.base());
+                generator.writeStringField("target", difference.target());
+                generator.writeStringField("change", difference.change().name());
+                generator.writeStringField("path", difference.path());
+                if (difference.from() != null) {
+                    generator.writeStringField("from", difference.from());
+                }
+                if (difference.to() != null) {
+                    generator.writeStringField("to", difference.to());
+                }
+                generator.writeEndObject();
+            }
+            if (!differences.isEmpty()) {
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private FlatConfig flattenUnchecked(String source) {
+        Map<String, String> values = new LinkedHashMap<>();
+        try (InputStream in = open(source)) {
+            flattener.flatten(in, (path, value) -> values.put(path.toString(), value));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to flatten config: " + source, e);
+        }
+        logger.info("Flattened {} ({} values)", source, values.size());
+        // Named by the source as given, so configs with the same file name in different folders stay apart
+        return new FlatConfig(source, values);
+    }
+
+    private static InputStream open(String source) throws IOException {
+        Path path = Paths.get(source);
+        if (Files.isRegularFile(path)) {
+            return Files.newInputStream(path);
+        }
+        InputStream in = ConfigDiffTool.class.getClassLoader().getResourceAsStream(source);
+        if (in == null) {
+            throw new IOException("Config not found on disk or classpath: " + source);
+        }
+        return in;
+    }
+
+    private interface PoolTask<T> {
+        T run();
+    }
+
+    /**
+     * Runs a parallel stream inside this tool's pool instead of the common pool.
+     */
+    private <T> T inPool(PoolTask<T> task) throws IOException {
+        try {
+            return pool.submit(task::run).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while diffing configs", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException && cause.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Failed to diff configs", cause);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path output = Paths.get(DEFAULT_OUTPUT);
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out" -> output = Paths.get(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                default -> sources.add(args[i]);
+            }
+        }
+        if (sources.isEmpty()) {
+            sources = List.of("config/appium.config.json", "config/appium.config.staging.json",
+                    "config/appium.config.production.json");
+        }
+
+        ConfigDiffTool tool = new ConfigDiffTool(threads);
+        try {
+            List<Difference> differences = tool.diff(tool.flattenAll(sources));
+            tool.writeNdjson(differences, output);
+
+            Map<Change, Integer> counts = new EnumMap<>(Change.class);
+            differences.forEach(difference -> counts.merge(difference.change(), 1, Integer::sum));
+            System.out.println("Compared " + sources.size() + " configs against " + sources.get(0) + ": " + counts);
+            System.out.println("Differences written to: " + output);
+        } finally {
+            tool.shutdown();
+        }
+    }
+}
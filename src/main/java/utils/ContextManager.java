@@ -0,0 +1,253 @@
+package utils;
+
+import io.appium.java_client.AppiumDriver;
+import io.appium.java_client.MobileCommand;
+import org.openqa.selenium.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Tracks the current context of one session so hybrid flows only switch when they have to.
+ *
+ * Switching to the context a session is already in is skipped without a server call. The WebViews
+ * reported by "mobile: getContexts" are cached together with their app package (bundle id on iOS)
+ * and page titles/URLs, so a WebView can be found by package or title without listing contexts on
+ * every switch. Appium keeps one Chromedriver attached per WebView as long as
+ * recreateChromeDriverSessions is false, which the uiautomator2 block of appium.config.json sets;
+ * switching back and forth therefore reuses the attachment instead of starting a new Chromedriver.
+ */
+public final class ContextManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContextManager.class);
+
+    public static final String NATIVE_APP = "NATIVE_APP";
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(250);
+
+    private static final Map<AppiumDriver, ContextManager> MANAGERS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * A WebView context with the pages it hosted when contexts were last listed.
+     *
+     * @param context     Context name, e.g. WEBVIEW_com.example.app
+     * @param packageName App package (Android) or bundle id (iOS), may be null
+     * @param pages       Title and URL of every page, may be empty
+     */
+    public record WebView(String context, String packageName, List<Page> pages) {
+
+        public boolean hasTitle(String title) {
+            return pages.stream().anyMatch(page -> page.title() != null && page.title().contains(title));
+        }
+    }
+
+    public record Page(String title, String url) {
+    }
+
+    // Weak, since MANAGERS is keyed weakly by this same driver: a strong reference here would keep
+    // the key reachable and the entry of a session that was never reset would never be cleared
+    private final WeakReference<AppiumDriver> driver;
+    private String currentContext;
+    private final Map<String, WebView> webViews = new LinkedHashMap<>();
+
+    private ContextManager(AppiumDriver driver) {
+        this.driver = new WeakReference<>(driver);
+    }
+
+    /**
+     * Returns the manager of a session, creating it on first use.
+     */
+    public static ContextManager forDriver(AppiumDriver driver) {
+        return MANAGERS.computeIfAbsent(driver, ContextManager::new);
+    }
+
+    /**
+     * Returns a session to the native context, if it is known to be elsewhere, and forgets its
+     * tracked context and WebViews, e.g. before a pooled session is handed to the next test.
+     */
+    public static void reset(AppiumDriver driver) {
+        ContextManager manager = MANAGERS.remove(driver);
+        if (manager != null) {
+            synchronized (manager) {
+                if (manager.currentContext != null && !NATIVE_APP.equals(manager.currentContext)) {
+                    manager.switchToNative();
+                }
+            }
+        }
+        PageSnapshot.invalidate(driver);
+    }
+
+    /**
+     * Returns the current context, asking the server only the first time.
+     * Contexts must be switched through this manager for the tracked value to stay right.
+     */
+    public synchronized String currentContext() {
+        if (currentContext == null) {
+            currentContext = String.valueOf(driver().execute(MobileCommand.GET_CURRENT_CONTEXT_HANDLE).getValue());
+        }
+        return currentContext;
+    }
+
+    /**
+     * Switches to a context unless the session is already in it.
+     *
+     * @return True if a switch was made
+     */
+    public synchronized boolean switchTo(String context) {
+        if (context.equals(currentContext())) {
+            logger.debug("Already in context {}, not switching", context);
+            return false;
+        }
+        long start = System.nanoTime();
+        driver().execute(MobileCommand.SWITCH_TO_CONTEXT, Map.of("name", context));
+        currentContext = context;
+        // Element queries of the previous context must not be answered from its page source
+        PageSnapshot.invalidate(driver());
+        logger.info("Switched to context {} in {} ms", context, (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
+    public boolean switchToNative() {
+        return switchTo(NATIVE_APP);
+    }
+
+    /**
+     * Switches to the first WebView, listing contexts only if none is known yet.
+     *
+     * @return The WebView context switched to
+     * @throws IllegalStateException If the app has no WebView
+     */
+    public synchronized String switchToWebView() {
+        if (currentContext().startsWith("WEBVIEW")) {
+            return currentContext;
+        }
+        Optional<WebView> webView = webViews.values().stream().findFirst();
+        if (webView.isEmpty()) {
+            webView = refresh().stream().findFirst();
+        }
+        String context = webView.orElseThrow(() -> new IllegalStateException("No WebView context found")).context();
+        try {
+            switchTo(context);
+        } catch (RuntimeException e) {
+            // The cached WebView may be gone, e.g. after its activity closed; list contexts again once
+            logger.debug("Switching to cached WebView {} failed, refreshing contexts", context, e);
+            context = refresh().stream().findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No WebView context found")).context();
+            switchTo(context);
+        }
+        return context;
+    }
+
+    /**
+     * Waits until a WebView of the given app package / bundle id, or with a page whose title contains
+     * the given text, is available and switches to it.
+     *
+     * @param packageOrTitle App package, bundle id or part of a page title
+     * @param timeout        How long to wait
+     * @return The WebView context switched to
+     * @throws TimeoutException If no such WebView appears in time
+     */
+    public synchronized String waitForWebView(String packageOrTitle, Duration timeout) {
+        Predicate<WebView> matches = webView -> packageOrTitle.equals(webView.packageName())
+                || webView.context().endsWith("_" + packageOrTitle)
+                || webView.hasTitle(packageOrTitle);
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            Optional<WebView> found = refresh().stream().filter(matches).findFirst();
+            if (found.isPresent()) {
+                switchTo(found.get().context());
+                return found.get().context();
+            }
+            if (System.nanoTime() >= deadline) {
+                throw new TimeoutException("No WebView for '" + packageOrTitle + "' after " + timeout.toMillis() + " ms");
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TimeoutException("Interrupted while waiting for WebView " + packageOrTitle, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the WebViews found when contexts were last listed.
+     */
+    public synchronized List<WebView> webViews() {
+        return List.copyOf(webViews.values());
+    }
+
+    /**
+     * Lists contexts on the server and replaces the cached WebView mapping.
+     */
+    public synchronized List<WebView> refresh() {
+        Object contexts = driver().executeScript("mobile: getContexts");
+        webViews.clear();
+        if (contexts instanceof Collection<?> entries) {
+            for (Object entry : entries) {
+                WebView webView = toWebView(entry);
+                if (webView != null) {
+                    webViews.put(webView.context(), webView);
+                }
+            }
+        }
+        logger.debug("WebViews: {}", webViews.values());
+        return List.copyOf(webViews.values());
+    }
+
+    /**
+     * Reads one entry of "mobile: getContexts": a plain name, a UiAutomator2 entry
+     * (webviewName, info, pages) or an XCUITest entry (id, title, url, bundleId).
+     */
+    private static WebView toWebView(Object entry) {
+        if (entry instanceof String name) {
+            return name.startsWith("WEBVIEW") ? new WebView(name, null, List.of()) : null;
+        }
+        if (!(entry instanceof Map<?, ?> map)) {
+            return null;
+        }
+        Object name = map.get("webviewName") != null ? map.get("webviewName") : map.get("id");
+        if (name == null || !name.toString().startsWith("WEBVIEW")) {
+            return null;
+        }
+        String packageName = null;
+        if (map.get("info") instanceof Map<?, ?> info && info.get("Android-Package") != null) {
+            packageName = info.get("Android-Package").toString();
+        } else if (map.get("bundleId") != null) {
+            packageName = map.get("bundleId").toString();
+        }
+        List<Page> pages = new ArrayList<>();
+        if (map.get("pages") instanceof Collection<?> pageList) {
+            for (Object page : pageList) {
+                if (page instanceof Map<?, ?> pageMap) {
+                    pages.add(new Page(text(pageMap.get("title")), text(pageMap.get("url"))));
+                }
+            }
+        } else if (map.get("title") != null || map.get("url") != null) {
+            pages.add(new Page(text(map.get("title")), text(map.get("url"))));
+        }
+        return new WebView(name.toString(), packageName, List.copyOf(pages));
+    }
+
+    private static String text(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private AppiumDriver driver() {
+        AppiumDriver current = driver.get();
+        if (current == null) {
+            throw new IllegalStateException("Session of this context manager is gone");
+        }
+        return current;
+    }
+}
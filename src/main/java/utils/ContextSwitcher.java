@@ -13,8 +13,10 @@ public class ContextSwitcher {
 
     public void switchToNative() {
         try {
-            driver.executeScript("mobile: switchToContext", "NATIVE_APP");
-            System.out.println("Switched to Native App context.");
+            // Skipped without a server call when the session is already native
+            if (ContextManager.forDriver(driver).switchToNative()) {
+                System.out.println("Switched to Native App context.");
+            }
         } catch (Exception e) {
             System.err.println("Error switching to Native App context: " + e.getMessage());
         }
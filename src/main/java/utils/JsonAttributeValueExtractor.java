@@ -5,13 +5,19 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -19,9 +25,11 @@ public class JsonAttributeValueExtractor {
 
     private static final Logger logger = LoggerFactory.getLogger(JsonAttributeValueExtractor.class);
     private final ObjectMapper objectMapper;
+    private final JsonStreamFlattener flattener;
 
     public JsonAttributeValueExtractor() {
         this.objectMapper = new ObjectMapper();
+        this.flattener = new JsonStreamFlattener(objectMapper.getFactory());
     }
 
     /**
@@ -67,6 +75,35 @@ public class JsonAttributeValueExtractor {
         }
     }
 
+    /**
+     * Prints JSON as attribute-value pairs without parsing it into a tree, for files too large
+     * to hold in memory. Output matches {@link #printAttributes(JsonNode, String)}.
+     *
+     * @param filePath Path to the JSON file.
+     * @return Number of attribute-value pairs printed.
+     * @throws IOException If the file cannot be read or parsed.
+     */
+    public long printAttributesStreaming(String filePath) throws IOException {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 64 * 1024);
+        long count = writeAttributes(filePath, out);
+        out.flush();
+        return count;
+    }
+
+    /**
+     * Streams JSON as attribute-value pairs into a writer, one "path = value" line each.
+     *
+     * @param filePath Path to the JSON file.
+     * @param out      Destination; should be buffered. It is not closed.
+     * @return Number of attribute-value pairs written.
+     * @throws IOException If the file cannot be read or parsed.
+     */
+    public long writeAttributes(String filePath, Writer out) throws IOException {
+        validateFile(filePath);
+        logger.info("Streaming JSON file: {}", filePath);
+        return flattener.flatten(Paths.get(filePath), JsonStreamFlattener.writer(out));
+    }
+
     /**
      * Validates if the file exists and is readable.
      *
@@ -98,17 +135,6 @@ public class JsonAttributeValueExtractor {
             throw new RuntimeException(e);
         }
     }
-    /**
-     * Safely gets the value of a JSON node as a string.
-     *
-     * @param node The JSON node to query.
-     * @param key  The key to fetch.
-     * @return The value as a string, or "N/A" if the key does not exist.
-     */
-    private static String getSafeValue(JsonNode node, String key) {
-        JsonNode valueNode = node.get(key);
-        return valueNode != null ? valueNode.asText() : "N/A";
-    }
     public static void main(String[] args) {
         try {
 
@@ -117,45 +143,36 @@ public class JsonAttributeValueExtractor {
             String filePath1 = getResourceFilePath("config/appium.config.staging.json");
             JsonAttributeValueExtractor parser = new JsonAttributeValueExtractor();
 
-            JsonNode rootNode1 = parser.parseJsonFile(filePath);
             System.out.println("Parsed JSON Attribute-Value Pairs:");
             System.out.println("=".repeat(80));
-            parser.printAttributes(rootNode1, "");
-            parser.printAttributes(parser.parseJsonFile(filePath1), "");
+            parser.printAttributesStreaming(filePath);
+            parser.printAttributesStreaming(filePath1);
 
             //Approach 2
-            // Parse JSON file
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode rootNode = mapper.readTree(new File(filePath));
-
-            // Navigate to the specific path
-            JsonNode automationNameNode = rootNode
-                    .path("appium")           // Root -> "appium"
-                    .path("drivers")         // -> "drivers"
-                    .path("xcuitest")        // -> "xcuitest"
-                    .path("simulators")      // -> "simulators"
-                    .get(0)                  // First element in the array
-                    .path("automationName"); // -> "automationName"
-
-            // Extract and print the value
-            String automationName = automationNameNode.asText("N/A");
+            // Precompiled paths, evaluated against a tree
+            JsonNode rootNode = parser.parseJsonFile(filePath);
+            String automationName = JsonPathExpression.compile("appium.drivers.xcuitest.simulators[0].automationName")
+                    .evaluateText(rootNode, "N/A");
             System.out.println("automationName: " + automationName);
 
-            // Get exact values using paths
-
-            // Safely get exact values using paths
-            String platform = getSafeValue(rootNode, "platform");
-            String version = getSafeValue(rootNode, "version");
-            String deviceName = getSafeValue(rootNode.path("capabilities"), "deviceName");
-            String udid = getSafeValue(rootNode.path("capabilities"), "udid");
-            String firstFeature = rootNode.path("capabilities").path("features").path(0).asText("Feature not found");
+            //Approach 3
+            // Several paths pulled from the file in a single streaming pass
+            JsonPathExpression platform = JsonPathExpression.compile("platform");
+            JsonPathExpression version = JsonPathExpression.compile("version");
+            JsonPathExpression deviceName = JsonPathExpression.compile("capabilities.deviceName");
+            JsonPathExpression udid = JsonPathExpression.compile("capabilities.udid");
+            JsonPathExpression firstFeature = JsonPathExpression.compile("capabilities.features[0]");
+            Map<JsonPathExpression, JsonNode> values;
+            try (InputStream in = Files.newInputStream(Paths.get(filePath))) {
+                values = JsonPathExpression.extract(in, List.of(platform, version, deviceName, udid, firstFeature));
+            }
 
             // Print the extracted values
-            System.out.println("Platform: " + platform);
-            System.out.println("Version: " + version);
-            System.out.println("Device Name: " + deviceName);
-            System.out.println("UDID: " + udid);
-            System.out.println("First Feature: " + firstFeature);
+            System.out.println("Platform: " + values.get(platform).asText("N/A"));
+            System.out.println("Version: " + values.get(version).asText("N/A"));
+            System.out.println("Device Name: " + values.get(deviceName).asText("N/A"));
+            System.out.println("UDID: " + values.get(udid).asText("N/A"));
+            System.out.println("First Feature: " + values.get(firstFeature).asText("Feature not found"));
 
         } catch (IOException e) {
             logger.error("Error parsing JSON file", e);
@@ -0,0 +1,248 @@
+package utils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precompiled path such as appium.drivers.xcuitest.simulators[0].automationName.
+ *
+ * Compile once, then evaluate against a parsed tree, or pull several paths out of a stream in a
+ * single pass with {@link #extract(InputStream, Collection)}. Segments are field names separated by
+ * '.' and array indexes in brackets; a field name containing '.' or '[' can be written as ['name'].
+ */
+public final class JsonPathExpression {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Map<String, JsonPathExpression> COMPILED = new ConcurrentHashMap<>();
+
+    private final String expression;
+    // Each segment is either a String field name or an Integer array index
+    private final Object[] segments;
+
+    private JsonPathExpression(String expression, Object[] segments) {
+        this.expression = expression;
+        this.segments = segments;
+    }
+
+    /**
+     * Compiles an expression. Compiled expressions are cached, so repeated calls are cheap.
+     *
+     * @param expression Path like "a.b[0].c"
+     * @return The compiled expression
+     * @throws IllegalArgumentException If the expression is malformed
+     */
+    public static JsonPathExpression compile(String expression) {
+        return COMPILED.computeIfAbsent(expression, e -> new JsonPathExpression(e, parse(e)));
+    }
+
+    /**
+     * Evaluates the expression against a tree.
+     *
+     * @param root Node the path starts from
+     * @return The node found, or a missing node
+     */
+    public JsonNode evaluate(JsonNode root) {
+        return evaluate(root, 0);
+    }
+
+    /**
+     * Evaluates the expression and returns the value as text.
+     *
+     * @param root         Node the path starts from
+     * @param defaultValue Returned when the path does not exist
+     */
+    public String evaluateText(JsonNode root, String defaultValue) {
+        JsonNode node = evaluate(root);
+        return node.isMissingNode() || node.isNull() ? defaultValue : node.asText(defaultValue);
+    }
+
+    /**
+     * Reads JSON from a stream once and returns the value of every expression. Only the matched
+     * values are turned into trees; everything else is skipped token by token, and reading stops
+     * as soon as every expression has been found. The stream is not closed.
+     *
+     * @param in          JSON input
+     * @param expressions Paths to extract
+     * @return Value per expression, in the order given; missing paths map to a missing node
+     */
+    public static Map<JsonPathExpression, JsonNode> extract(InputStream in, Collection<JsonPathExpression> expressions)
+            throws IOException {
+        try (JsonParser parser = MAPPER.createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            return extract(parser, expressions);
+        }
+    }
+
+    /**
+     * Single-pass extraction from a parser positioned before a value.
+     * The parser must have a codec, e.g. be created by an ObjectMapper.
+     *
+     * @see #extract(InputStream, Collection)
+     */
+    public static Map<JsonPathExpression, JsonNode> extract(JsonParser parser, Collection<JsonPathExpression> expressions)
+            throws IOException {
+        Map<JsonPathExpression, JsonNode> results = new LinkedHashMap<>();
+        Trie root = new Trie();
+        for (JsonPathExpression expression : expressions) {
+            if (results.put(expression, MissingNode.getInstance()) == null) {
+                root.add(expression);
+            }
+        }
+        if (!results.isEmpty() && parser.nextToken() != null) {
+            read(parser, root, 0, results, new int[]{results.size()});
+        }
+        return results;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof JsonPathExpression that && expression.equals(that.expression);
+    }
+
+    @Override
+    public int hashCode() {
+        return expression.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    private JsonNode evaluate(JsonNode node, int from) {
+        for (int i = from; i < segments.length && !node.isMissingNode(); i++) {
+            node = segments[i] instanceof Integer index ? node.path(index) : node.path((String) segments[i]);
+        }
+        return node;
+    }
+
+    /**
+     * Reads the value the parser is on. Returns true once every expression has been found.
+     */
+    private static boolean read(JsonParser parser, Trie node, int depth,
+                                Map<JsonPathExpression, JsonNode> results, int[] remaining) throws IOException {
+        if (!node.terminal.isEmpty()) {
+            // A requested value: materialize just this subtree and answer every path below it from it
+            JsonNode value = parser.readValueAsTree();
+            if (value == null) {
+                value = MissingNode.getInstance();
+            }
+            for (JsonPathExpression expression : node.below) {
+                results.put(expression, expression.evaluate(value, depth));
+                remaining[0]--;
+            }
+            return remaining[0] == 0;
+        }
+
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Trie child = node.fields.get(parser.currentName());
+                parser.nextToken();
+                if (child == null) {
+                    parser.skipChildren();
+                } else if (read(parser, child, depth + 1, results, remaining)) {
+                    return true;
+                }
+            }
+        } else if (token == JsonToken.START_ARRAY) {
+            int index = 0;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                Trie child = node.indexes.get(index++);
+                if (child == null) {
+                    parser.skipChildren();
+                } else if (read(parser, child, depth + 1, results, remaining)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Object[] parse(String expression) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("Empty JSON path expression");
+        }
+        List<Object> segments = new ArrayList<>();
+        int i = 0;
+        int length = expression.length();
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (c == '[') {
+                int close = expression.indexOf(']', i);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed '[' in JSON path: " + expression);
+                }
+                String inner = expression.substring(i + 1, close);
+                if (inner.length() >= 2 && (inner.charAt(0) == '\'' || inner.charAt(0) == '"')
+                        && inner.charAt(inner.length() - 1) == inner.charAt(0)) {
+                    segments.add(inner.substring(1, inner.length() - 1));
+                } else {
+                    try {
+                        segments.add(Integer.parseInt(inner));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid index '" + inner + "' in JSON path: " + expression);
+                    }
+                }
+                i = close + 1;
+            } else if (c == '.') {
+                i++;
+            } else {
+                int end = i;
+                while (end < length && expression.charAt(end) != '.' && expression.charAt(end) != '[') {
+                    end++;
+                }
+                segments.add(expression.substring(i, end));
+                i = end;
+            }
+        }
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("Invalid JSON path expression: " + expression);
+        }
+        return segments.toArray();
+    }
+
+    /**
+     * Expressions merged by shared prefix, so one walk of the document serves all of them.
+     */
+    private static final class Trie {
+        private final Map<String, Trie> fields = new HashMap<>();
+        private final Map<Integer, Trie> indexes = new HashMap<>();
+        private final List<JsonPathExpression> terminal = new ArrayList<>();
+        private final List<JsonPathExpression> below = new ArrayList<>();
+
+        void add(JsonPathExpression expression) {
+            Trie node = this;
+            for (Object segment : expression.segments) {
+                node = segment instanceof Integer index
+                        ? node.indexes.computeIfAbsent(index, k -> new Trie())
+                        : node.fields.computeIfAbsent((String) segment, k -> new Trie());
+                node.below.add(expression);
+            }
+            node.terminal.add(expression);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        JsonPathExpression automationName = compile("appium.drivers.xcuitest.simulators[0].automationName");
+        JsonPathExpression port = compile("appium.server.port");
+        try (InputStream in = JsonPathExpression.class.getClassLoader().getResourceAsStream("config/appium.config.json")) {
+            extract(in, Arrays.asList(automationName, port))
+                    .forEach((expression, value) -> System.out.println(expression + " = " + value.asText("N/A")));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Flattens JSON into (path, value) pairs such as appium.drivers.xcuitest.simulators[0].deviceName = iPhone 14,
+ * reading token by token so no tree is ever built. Memory use depends on nesting depth only,
+ * which makes it usable on captured responses and logs of hundreds of MB.
+ *
+ * One path buffer is reused for the whole document: each level only appends its key or index
+ * and truncates back when it ends, so no intermediate key strings are created.
+ */
+public class JsonStreamFlattener {
+
+    /**
+     * Receives each leaf value. The path is the flattener's own buffer and is only valid during the call.
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void accept(CharSequence path, String value) throws IOException;
+    }
+
+    private static final int KEY_COLUMN_WIDTH = 50;
+
+    private final JsonFactory jsonFactory;
+
+    public JsonStreamFlattener() {
+        this(new JsonFactory());
+    }
+
+    /**
+     * @param jsonFactory Factory to create parsers with, e.g. the one of an existing ObjectMapper
+     */
+    public JsonStreamFlattener(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Flattens a JSON file.
+     *
+     * @return Number of values emitted
+     */
+    public long flatten(Path file, Sink sink) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return flatten(in, sink);
+        }
+    }
+
+    /**
+     * Flattens JSON read from a stream. The stream is not closed.
+     *
+     * @return Number of values emitted
+     */
+    public long flatten(InputStream in, Sink sink) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            return flatten(parser, sink);
+        }
+    }
+
+    /**
+     * Flattens every remaining token of a parser.
+     *
+     * @return Number of values emitted
+     */
+    public long flatten(JsonParser parser, Sink sink) throws IOException {
+        StringBuilder path = new StringBuilder(128);
+        // Per open container: length of the path at its start, and the next array index (-1 for objects)
+        int[] bases = new int[16];
+        int[] indexes = new int[16];
+        int depth = 0;
+        bases[0] = 0;
+        indexes[0] = -1;
+        long count = 0;
+
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            switch (token) {
+                case FIELD_NAME -> {
+                    path.setLength(bases[depth]);
+                    if (bases[depth] > 0) {
+                        path.append('.');
+                    }
+                    path.append(parser.currentName());
+                }
+                case START_OBJECT, START_ARRAY -> {
+                    appendIndex(path, bases, indexes, depth);
+                    if (++depth == bases.length) {
+                        bases = Arrays.copyOf(bases, depth * 2);
+                        indexes = Arrays.copyOf(indexes, depth * 2);
+                    }
+                    bases[depth] = path.length();
+                    indexes[depth] = token == JsonToken.START_ARRAY ? 0 : -1;
+                }
+                case END_OBJECT, END_ARRAY -> {
+                    depth--;
+                    path.setLength(bases[depth]);
+                }
+                default -> {
+                    appendIndex(path, bases, indexes, depth);
+                    sink.accept(path, parser.getText());
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns a sink that writes one "path = value" line per value, with the path padded to a fixed column.
+     * The writer should be buffered; it is not flushed or closed by the sink.
+     */
+    public static Sink writer(Writer out) {
+        String lineSeparator = System.lineSeparator();
+        return (path, value) -> {
+            out.append(path);
+            for (int i = path.length(); i < KEY_COLUMN_WIDTH; i++) {
+                out.write(' ');
+            }
+            out.append(" = ").append(value).append(lineSeparator);
+        };
+    }
+
+    private static void appendIndex(StringBuilder path, int[] bases, int[] indexes, int depth) {
+        if (indexes[depth] >= 0) {
+            path.setLength(bases[depth]);
+            path.append('[').append(indexes[depth]++).append(']');
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.appium.java_client.AppiumBy;
+import io.appium.java_client.AppiumDriver;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.WebElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Logical element names mapped to platform locators, loaded from locators/&lt;platform&gt;-locators.json.
+ *
+ * Each name lists one or more strategies, e.g.
+ * {"login.submit": {"accessibilityId": "login-button", "xpath": "//android.widget.Button[@text='Login']"}}.
+ * The file is read once per platform and every By is built once. {@link #find(SearchContext, String)}
+ * tries the strategies fastest first: before any measurement by a fixed cost order (accessibility id
+ * first, XPath last), afterwards by the average lookup time measured in this run. Lookups that keep
+ * resolving through a slow strategy are logged as a warning once per name.
+ *
+ * Thresholds: -Dlocators.hotPathCount (default 20 lookups) and -Dlocators.slowMillis (default 500).
+ */
+public final class LocatorRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocatorRepository.class);
+
+    private static final int HOT_PATH_COUNT = Integer.getInteger("locators.hotPathCount", 20);
+    private static final long SLOW_NANOS = Long.getLong("locators.slowMillis", 500L) * 1_000_000L;
+    private static final double SMOOTHING = 0.3;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Map<String, LocatorRepository> REPOSITORIES = new ConcurrentHashMap<>();
+
+    /**
+     * Locator strategy, with a prior cost used until lookups have been measured.
+     */
+    public enum Strategy {
+        ACCESSIBILITY_ID("accessibilityId", 1, false),
+        ID("id", 2, false),
+        ANDROID_UI_AUTOMATOR("androidUIAutomator", 3, false),
+        IOS_CLASS_CHAIN("iOSClassChain", 3, false),
+        IOS_NS_PREDICATE("iOSNsPredicateString", 3, false),
+        CLASS_NAME("className", 4, false),
+        XPATH("xpath", 10, true);
+
+        private final String key;
+        private final int cost;
+        private final boolean slow;
+
+        Strategy(String key, int cost, boolean slow) {
+            this.key = key;
+            this.cost = cost;
+            this.slow = slow;
+        }
+
+        static Strategy fromKey(String key) {
+            for (Strategy strategy : values()) {
+                if (strategy.key.equals(key)) {
+                    return strategy;
+                }
+            }
+            throw new IllegalArgumentException("Unknown locator strategy: " + key);
+        }
+
+        By toBy(String value) {
+            return switch (this) {
+                case ACCESSIBILITY_ID -> AppiumBy.accessibilityId(value);
+                case ID -> By.id(value);
+                case ANDROID_UI_AUTOMATOR -> AppiumBy.androidUIAutomator(value);
+                case IOS_CLASS_CHAIN -> AppiumBy.iOSClassChain(value);
+                case IOS_NS_PREDICATE -> AppiumBy.iOSNsPredicateString(value);
+                case CLASS_NAME -> AppiumBy.className(value);
+                case XPATH -> AppiumBy.xpath(value);
+            };
+        }
+    }
+
+    /**
+     * One prebuilt locator of a logical name, with its measured lookup times.
+     */
+    public static final class Candidate {
+        private final Strategy strategy;
+        private final By by;
+        private long lookups;
+        private double averageNanos = -1;
+
+        private Candidate(Strategy strategy, By by) {
+            this.strategy = strategy;
+            this.by = by;
+        }
+
+        public Strategy getStrategy() {
+            return strategy;
+        }
+
+        public By getBy() {
+            return by;
+        }
+
+        public synchronized long getLookups() {
+            return lookups;
+        }
+
+        /**
+         * Average lookup time in milliseconds, weighted towards recent lookups; -1 if never measured.
+         */
+        public synchronized double getAverageMillis() {
+            return averageNanos < 0 ? -1 : averageNanos / 1_000_000.0;
+        }
+
+        private synchronized void record(long nanos) {
+            lookups++;
+            averageNanos = averageNanos < 0 ? nanos : SMOOTHING * nanos + (1 - SMOOTHING) * averageNanos;
+        }
+
+        private synchronized double rank() {
+            // Unmeasured strategies compete by prior cost, scaled to roughly a 100 ms unit
+            return averageNanos < 0 ? strategy.cost * 100_000_000.0 : averageNanos;
+        }
+    }
+
+    private final String platform;
+    private final Map<String, List<Candidate>> locators;
+    private final Set<String> warned = ConcurrentHashMap.newKeySet();
+
+    private LocatorRepository(String platform, Map<String, List<Candidate>> locators) {
+        this.platform = platform;
+        this.locators = locators;
+    }
+
+    /**
+     * Returns the repository of a platform, loading its file on first use.
+     *
+     * @param platform "android" or "ios"
+     */
+    public static LocatorRepository forPlatform(String platform) {
+        return REPOSITORIES.computeIfAbsent(platform.toLowerCase(Locale.ROOT), LocatorRepository::load);
+    }
+
+    /**
+     * Returns the repository matching the platformName of a driver's session.
+     */
+    public static LocatorRepository forDriver(AppiumDriver driver) {
+        Object platformName = driver.getCapabilities().getCapability("platformName");
+        if (platformName == null) {
+            throw new IllegalArgumentException("Driver session has no platformName");
+        }
+        return forPlatform(platformName.toString());
+    }
+
+    public Set<String> names() {
+        return locators.keySet();
+    }
+
+    /**
+     * Returns the currently fastest locator of a name.
+     */
+    public By by(String name) {
+        return candidates(name).get(0).getBy();
+    }
+
+    /**
+     * Returns every locator of a name, fastest first.
+     */
+    public List<Candidate> candidates(String name) {
+        List<Candidate> candidates = locators.get(name);
+        if (candidates == null) {
+            throw new IllegalArgumentException("No locator '" + name + "' for platform " + platform);
+        }
+        if (candidates.size() == 1) {
+            return candidates;
+        }
+        // Snapshot the ranks first; other threads may record lookups while this list is sorted
+        Map<Candidate, Double> ranks = new IdentityHashMap<>();
+        candidates.forEach(candidate -> ranks.put(candidate, candidate.rank()));
+        List<Candidate> ranked = new ArrayList<>(candidates);
+        ranked.sort(Comparator.comparingDouble(ranks::get));
+        return ranked;
+    }
+
+    /**
+     * Finds an element by logical name, trying its locators fastest first and timing each lookup.
+     *
+     * @param context Driver or parent element to search in
+     * @param name    Logical element name
+     * @throws NoSuchElementException If no locator of the name matches
+     */
+    public WebElement find(SearchContext context, String name) {
+        NoSuchElementException lastFailure = null;
+        for (Candidate candidate : candidates(name)) {
+            long start = System.nanoTime();
+            try {
+                WebElement element = context.findElement(candidate.getBy());
+                candidate.record(System.nanoTime() - start);
+                warnIfSlow(name, candidate);
+                return element;
+            } catch (NoSuchElementException e) {
+                // A miss counts as at least a slow lookup, so a strategy that stopped matching drops back
+                candidate.record(Math.max(System.nanoTime() - start, SLOW_NANOS));
+                lastFailure = e;
+                logger.debug("Locator '{}' not found by {}, trying next strategy", name, candidate.getStrategy());
+            }
+        }
+        throw lastFailure != null ? lastFailure
+                : new NoSuchElementException("No locator for '" + name + "' on " + platform);
+    }
+
+    /**
+     * Returns measured lookups per name and strategy, e.g. for a report at the end of a run.
+     */
+    public Map<String, List<Candidate>> stats() {
+        return Collections.unmodifiableMap(locators);
+    }
+
+    private void warnIfSlow(String name, Candidate used) {
+        if (warned.contains(name)) {
+            return;
+        }
+        boolean hotSlowStrategy = used.getStrategy().slow && used.getLookups() >= HOT_PATH_COUNT;
+        boolean slowLookup = used.getLookups() >= 3 && used.rank() >= SLOW_NANOS;
+        if ((hotSlowStrategy || slowLookup) && warned.add(name)) {
+            logger.warn("Locator '{}' on {} resolved by {} {} times, averaging {} ms; "
+                            + "add an accessibilityId or id to {}-locators.json",
+                    name, platform, used.getStrategy(), used.getLookups(),
+                    String.format("%.1f", used.getAverageMillis()), platform);
+        }
+    }
+
+    private static LocatorRepository load(String platform) {
+        String resourcePath = String.format("locators/%s-locators.json", platform);
+        Map<String, List<Candidate>> locators = new LinkedHashMap<>();
+        try (InputStream is = LocatorRepository.class.getClassLoader().getResourceAsStream(resourcePath)) {
+            if (is == null) {
+                throw new IllegalArgumentException("Locator file not found on classpath: " + resourcePath);
+            }
+            JsonNode root = MAPPER.readTree(is);
+            if (root != null && root.isObject()) {
+                for (Iterator<Map.Entry<String, JsonNode>> names = root.fields(); names.hasNext(); ) {
+                    Map.Entry<String, JsonNode> entry = names.next();
+                    List<Candidate> candidates = new ArrayList<>();
+                    entry.getValue().fields().forEachRemaining(strategy -> {
+                        Strategy parsed = Strategy.fromKey(strategy.getKey());
+                        candidates.add(new Candidate(parsed, parsed.toBy(strategy.getValue().asText())));
+                    });
+                    if (candidates.isEmpty()) {
+                        throw new IllegalArgumentException("Locator '" + entry.getKey() + "' has no strategies in " + resourcePath);
+                    }
+                    candidates.sort(Comparator.comparingInt(candidate -> candidate.getStrategy().cost));
+                    locators.put(entry.getKey(), List.copyOf(candidates));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load locators: " + resourcePath, e);
+        }
+        logger.info("Loaded {} locators from {}", locators.size(), resourcePath);
+        return new LocatorRepository(platform, Collections.unmodifiableMap(locators));
+    }
+
+    public static void main(String[] args) {
+        LocatorRepository android = LocatorRepository.forPlatform("android");
+        for (String name : android.names()) {
+            System.out.println(name + " -> " + android.by(name));
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package utils;
+
+import io.appium.java_client.AppiumBy;
+import io.appium.java_client.AppiumDriver;
+import org.openqa.selenium.By;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Indexed, read-only view of one native page source.
+ *
+ * The XML from getPageSource() is parsed with a streaming (StAX) reader straight into lists of
+ * nodes indexed by resource-id, accessibility id (content-desc on Android, name on iOS) and text
+ * (text, label or value), so reading twenty fields of a screen costs one round trip instead of
+ * twenty findElement calls.
+ *
+ * Snapshot mode is opt-in: {@link #of(AppiumDriver)} fetches a snapshot and keeps it for the session
+ * until {@link #invalidate(AppiumDriver)} is called, an action is run through
+ * {@link #perform(AppiumDriver, Runnable)}, or it is older than -Dsnapshot.maxAgeMillis (default 2000).
+ * Web contexts are not supported; their page source is HTML.
+ */
+public final class PageSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageSnapshot.class);
+
+    private static final long MAX_AGE_MILLIS = Long.getLong("snapshot.maxAgeMillis", 2000L);
+    private static final String ID_SEPARATOR = ":id/";
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+    private static final Map<AppiumDriver, PageSnapshot> SNAPSHOTS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * One element of the page source.
+     *
+     * @param type       Element class (Android) or type (iOS), i.e. the XML tag
+     * @param attributes Every attribute of the element
+     * @param depth      Nesting depth, 0 for the root
+     */
+    public record Node(String type, Map<String, String> attributes, int depth) {
+
+        public String attribute(String name) {
+            return attributes.get(name);
+        }
+
+        /**
+         * Text of the element: text on Android, value or label on iOS.
+         */
+        public String text() {
+            String text = attributes.get("text");
+            if (text == null) {
+                text = attributes.get("value");
+            }
+            return text != null ? text : attributes.get("label");
+        }
+
+        public boolean isDisplayed() {
+            String displayed = attributes.getOrDefault("displayed", attributes.get("visible"));
+            return displayed == null || Boolean.parseBoolean(displayed);
+        }
+    }
+
+    private final List<Node> nodes;
+    private final Map<String, List<Node>> byResourceId;
+    // Android resource-ids keyed by the part after ":id/", as UiAutomator2 accepts By.id("name")
+    private final Map<String, List<Node>> byShortResourceId;
+    private final Map<String, List<Node>> byAccessibilityId;
+    private final Map<String, List<Node>> byText;
+    private final long createdAt = System.currentTimeMillis();
+
+    private PageSnapshot(List<Node> nodes, Map<String, List<Node>> byResourceId, Map<String, List<Node>> byShortResourceId,
+                         Map<String, List<Node>> byAccessibilityId, Map<String, List<Node>> byText) {
+        this.nodes = nodes;
+        this.byResourceId = byResourceId;
+        this.byShortResourceId = byShortResourceId;
+        this.byAccessibilityId = byAccessibilityId;
+        this.byText = byText;
+    }
+
+    /**
+     * Returns the session's cached snapshot, fetching a new one if there is none or it expired.
+     */
+    public static PageSnapshot of(AppiumDriver driver) {
+        PageSnapshot snapshot = SNAPSHOTS.get(driver);
+        if (snapshot == null || snapshot.isExpired()) {
+            snapshot = parse(driver.getPageSource());
+            SNAPSHOTS.put(driver, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Fetches a new snapshot and makes it the session's cached one.
+     */
+    public static PageSnapshot refresh(AppiumDriver driver) {
+        PageSnapshot snapshot = parse(driver.getPageSource());
+        SNAPSHOTS.put(driver, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Drops the session's cached snapshot. Call after anything that may change the screen.
+     */
+    public static void invalidate(AppiumDriver driver) {
+        SNAPSHOTS.remove(driver);
+    }
+
+    /**
+     * Runs an action such as a click or typing and invalidates the snapshot afterwards.
+     */
+    public static void perform(AppiumDriver driver, Runnable action) {
+        try {
+            action.run();
+        } finally {
+            invalidate(driver);
+        }
+    }
+
+    /**
+     * Parses a native page source.
+     *
+     * @throws IllegalArgumentException If the source is not well-formed XML
+     */
+    public static PageSnapshot parse(String pageSource) {
+        List<Node> nodes = new ArrayList<>();
+        Map<String, List<Node>> byResourceId = new HashMap<>();
+        Map<String, List<Node>> byShortResourceId = new HashMap<>();
+        Map<String, List<Node>> byAccessibilityId = new HashMap<>();
+        Map<String, List<Node>> byText = new HashMap<>();
+
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(pageSource));
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    Map<String, String> attributes = new LinkedHashMap<>();
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                    }
+                    Node node = new Node(reader.getLocalName(), Collections.unmodifiableMap(attributes), depth++);
+                    nodes.add(node);
+                    String resourceId = attributes.get("resource-id");
+                    index(byResourceId, resourceId, node);
+                    if (resourceId != null && resourceId.contains(ID_SEPARATOR)) {
+                        index(byShortResourceId, resourceId.substring(resourceId.indexOf(ID_SEPARATOR) + ID_SEPARATOR.length()), node);
+                    }
+                    index(byAccessibilityId, attributes.get("content-desc"), node);
+                    index(byAccessibilityId, attributes.get("name"), node);
+                    index(byText, attributes.get("text"), node);
+                    index(byText, attributes.get("label"), node);
+                    index(byText, attributes.get("value"), node);
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("Page source is not valid XML", e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    logger.debug("Failed to close page source reader", e);
+                }
+            }
+        }
+        logger.debug("Page snapshot with {} nodes", nodes.size());
+        return new PageSnapshot(Collections.unmodifiableList(nodes), byResourceId, byShortResourceId,
+                byAccessibilityId, byText);
+    }
+
+    public List<Node> byResourceId(String resourceId) {
+        return byResourceId.getOrDefault(resourceId, List.of());
+    }
+
+    public List<Node> byAccessibilityId(String accessibilityId) {
+        return byAccessibilityId.getOrDefault(accessibilityId, List.of());
+    }
+
+    public List<Node> byText(String text) {
+        return byText.getOrDefault(text, List.of());
+    }
+
+    /**
+     * Answers an id or accessibility id locator from the snapshot. Like UiAutomator2, an id without
+     * ":id/" also matches "&lt;package&gt;:id/&lt;id&gt;" resource-ids.
+     *
+     * @throws IllegalArgumentException For strategies the snapshot cannot answer, e.g. XPath
+     */
+    public List<Node> find(By by) {
+        String value = valueOf(by);
+        if (by instanceof By.ById) {
+            List<Node> found = byResourceId(value);
+            if (found.isEmpty() && !value.contains(ID_SEPARATOR)) {
+                found = byShortResourceId.getOrDefault(value, List.of());
+            }
+            // iOS reports ids as name
+            return found.isEmpty() ? byAccessibilityId(value) : found;
+        }
+        if (by instanceof AppiumBy.ByAccessibilityId) {
+            return byAccessibilityId(value);
+        }
+        throw new IllegalArgumentException("Page snapshots answer id and accessibilityId locators only, not " + by);
+    }
+
+    public boolean has(By by) {
+        return !find(by).isEmpty();
+    }
+
+    public boolean hasText(String text) {
+        return !byText(text).isEmpty();
+    }
+
+    /**
+     * Text of the first element matching the locator, or null.
+     */
+    public String text(By by) {
+        List<Node> found = find(by);
+        return found.isEmpty() ? null : found.get(0).text();
+    }
+
+    public List<Node> nodes() {
+        return nodes;
+    }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() - createdAt > MAX_AGE_MILLIS;
+    }
+
+    private static String valueOf(By by) {
+        String description = by.toString();
+        return description.substring(description.indexOf(':') + 1).trim();
+    }
+
+    private static void index(Map<String, List<Node>> index, String key, Node node) {
+        if (key != null && !key.isEmpty()) {
+            index.computeIfAbsent(key, k -> new ArrayList<>(1)).add(node);
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
@@ -0,0 +1,282 @@
+package utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+/**
+ * Small HTTP endpoint on 127.0.0.1 that local Appium servers upload screen recordings to.
+ *
+ * Passing its URL as the "remotePath" of stopRecordingScreen makes Appium PUT the video file here
+ * instead of returning it as one Base64 string. Appium sends the file as the "file" field of a
+ * multipart/form-data body; only that part's bytes are written. A raw body with a video or
+ * octet-stream content type is written as is, anything else is rejected with 415. Either way the body
+ * is streamed into a FileChannel, so the video never sits in the test JVM's heap.
+ */
+public final class RecordingReceiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordingReceiver.class);
+
+    private static final String CONTEXT = "/recordings/";
+    // Form field Appium puts the video in; VideoRecorder sets it explicitly
+    public static final String FILE_FIELD = "file";
+    private static volatile RecordingReceiver instance;
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private record Upload(Path target, CompletableFuture<Path> done) {
+    }
+
+    private final HttpServer server;
+    private final Map<String, Upload> pending = new ConcurrentHashMap<>();
+
+    private RecordingReceiver() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(CONTEXT, this::handle);
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "recording-receiver");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        logger.info("Recording receiver listening on port {}", server.getAddress().getPort());
+    }
+
+    /**
+     * Returns the shared receiver, starting it on first use.
+     */
+    public static RecordingReceiver getInstance() {
+        RecordingReceiver receiver = instance;
+        if (receiver == null) {
+            synchronized (RecordingReceiver.class) {
+                receiver = instance;
+                if (receiver == null) {
+                    try {
+                        receiver = new RecordingReceiver();
+                    } catch (IOException e) {
+                        throw new RuntimeException("Failed to start recording receiver", e);
+                    }
+                    instance = receiver;
+                }
+            }
+        }
+        return receiver;
+    }
+
+    /**
+     * Reserves a one-shot upload URL whose body will be written to the target file.
+     *
+     * @param target File the uploaded video is written to
+     * @return URL to pass to Appium as remotePath, and a future completed once the file is on disk
+     */
+    public Map.Entry<String, CompletableFuture<Path>> expect(Path target) {
+        String token = UUID.randomUUID().toString();
+        CompletableFuture<Path> done = new CompletableFuture<>();
+        pending.put(token, new Upload(target, done));
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + CONTEXT + token;
+        return Map.entry(url, done);
+    }
+
+    /**
+     * Drops a reservation whose upload will never come, e.g. after the stop call failed.
+     */
+    public void cancel(String url) {
+        Upload upload = pending.remove(url.substring(url.lastIndexOf('/') + 1));
+        if (upload != null) {
+            upload.done().cancel(false);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String token = exchange.getRequestURI().getPath().substring(CONTEXT.length());
+        Upload upload = pending.remove(token);
+        if (upload == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        String boundary = boundary(contentType);
+        if (boundary == null && !isRawVideo(contentType)) {
+            upload.done().completeExceptionally(new IOException("Unsupported recording upload type: " + contentType));
+            exchange.sendResponseHeaders(415, -1);
+            exchange.close();
+            return;
+        }
+        try (InputStream body = new BufferedInputStream(exchange.getRequestBody(), 64 * 1024)) {
+            Files.createDirectories(upload.target().toAbsolutePath().getParent());
+            try (FileChannel target = FileChannel.open(upload.target(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long written;
+                if (boundary == null) {
+                    written = target.transferFrom(Channels.newChannel(body), 0, Long.MAX_VALUE);
+                } else {
+                    OutputStream out = new BufferedOutputStream(Channels.newOutputStream(target), 64 * 1024);
+                    written = copyFilePart(body, boundary, out);
+                    out.flush();
+                }
+                logger.debug("Received recording {} ({} bytes)", upload.target(), written);
+            }
+            exchange.sendResponseHeaders(200, -1);
+            upload.done().complete(upload.target());
+        } catch (IOException e) {
+            upload.done().completeExceptionally(e);
+            exchange.sendResponseHeaders(400, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns the boundary of a multipart/form-data content type, or null for any other type.
+     */
+    static String boundary(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data")) {
+            return null;
+        }
+        for (String parameter : contentType.split(";")) {
+            String[] pair = parameter.trim().split("=", 2);
+            if (pair.length == 2 && pair[0].trim().equalsIgnoreCase("boundary")) {
+                String value = pair[1].trim();
+                return value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")
+                        ? value.substring(1, value.length() - 1) : value;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isRawVideo(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("video/") || type.startsWith("application/octet-stream");
+    }
+
+    /**
+     * Streams the content of the "file" part of a multipart body to out, skipping every other part.
+     *
+     * @return Number of bytes written
+     * @throws IOException If the body is malformed or has no "file" part
+     */
+    static long copyFilePart(InputStream body, String boundary, OutputStream out) throws IOException {
+        // Every delimiter is CRLF--boundary; a virtual CRLF in front lets the first one match too
+        InputStream in = new SequenceInputStream(new ByteArrayInputStream(CRLF), body);
+        byte[] delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+        int[] fallback = fallback(delimiter);
+
+        // Preamble
+        if (copyUntil(in, delimiter, fallback, OutputStream.nullOutputStream()) < 0) {
+            throw new IOException("Multipart body has no boundary");
+        }
+        while (true) {
+            String afterDelimiter = readLine(in);
+            if (afterDelimiter.startsWith("--")) {
+                throw new IOException("Multipart body has no \"" + FILE_FIELD + "\" part");
+            }
+            boolean isFile = false;
+            for (String header = readLine(in); !header.isEmpty(); header = readLine(in)) {
+                String lower = header.toLowerCase(Locale.ROOT);
+                if (lower.startsWith("content-disposition:")
+                        && (lower.contains("; name=\"" + FILE_FIELD + "\"") || lower.contains(";name=\"" + FILE_FIELD + "\""))) {
+                    isFile = true;
+                }
+            }
+            long copied = copyUntil(in, delimiter, fallback, isFile ? out : OutputStream.nullOutputStream());
+            if (copied < 0) {
+                throw new IOException("Multipart body ends inside a part");
+            }
+            if (isFile) {
+                return copied;
+            }
+        }
+    }
+
+    /**
+     * Copies bytes to out until the delimiter, which is consumed but not written.
+     *
+     * @return Bytes written, or -1 if the stream ended before the delimiter
+     */
+    private static long copyUntil(InputStream in, byte[] delimiter, int[] fallback, OutputStream out) throws IOException {
+        long written = 0;
+        int matched = 0;
+        int b;
+        while ((b = in.read()) != -1) {
+            while (matched > 0 && b != (delimiter[matched] & 0xff)) {
+                // Bytes that no longer belong to a delimiter match are content
+                int keep = fallback[matched - 1];
+                out.write(delimiter, 0, matched - keep);
+                written += matched - keep;
+                matched = keep;
+            }
+            if (b == (delimiter[matched] & 0xff)) {
+                if (++matched == delimiter.length) {
+                    return written;
+                }
+            } else {
+                out.write(b);
+                written++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * KMP failure function: length of the longest proper prefix of delimiter[0..i] that is also its suffix.
+     */
+    private static int[] fallback(byte[] delimiter) {
+        int[] fallback = new int[delimiter.length];
+        for (int i = 1, k = 0; i < delimiter.length; i++) {
+            while (k > 0 && delimiter[i] != delimiter[k]) {
+                k = fallback[k - 1];
+            }
+            if (delimiter[i] == delimiter[k]) {
+                k++;
+            }
+            fallback[i] = k;
+        }
+        return fallback;
+    }
+
+    /**
+     * Reads one CRLF-terminated header line as ISO-8859-1.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            }
+            if (line.length() > 8192) {
+                throw new IOException("Multipart header line too long");
+            }
+            line.append((char) b);
+        }
+        throw new IOException("Multipart body ends inside a header");
+    }
+}
@@ -2,36 +2,43 @@ package utils;
 
 import io.appium.java_client.AppiumDriver;
 import io.appium.java_client.android.options.UiAutomator2Options;
-import org.apache.commons.io.FileUtils; // Import Apache Commons IO
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.TakesScreenshot;
+import org.testng.ITestResult;
 
-import java.io.File;
-import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.file.Path;
 
 public class ScreenshotUtils {
+    /**
+     * Grabs a screenshot from the driver and queues it for writing on the background
+     * {@link ArtifactWriter}; the test thread only pays for the driver round trip.
+     *
+     * @param fileName Name used to group the screenshot under reports/screenshots/adhoc
+     * @return Path the screenshot will be written to
+     */
     public static String captureScreenshot(AppiumDriver driver, String fileName) {
-        //check file screenshot direction path
-        File screenshotDir = new File("reports/screenshots/");
-        if (!screenshotDir.exists()) {
-            screenshotDir.mkdirs();
-        }
-        // Generate the custom fileName with date and timestamp
-        String timestamp = new SimpleDateFormat("MMddyyyy_HHmmss").format(new Date());
-        fileName = "screenshot_" + timestamp;
-        File screenshot = ((TakesScreenshot) driver).getScreenshotAs(OutputType.FILE);
-        String path = "reports/screenshots/" + fileName + ".png";
-        try {
-            // Copy screenshot to the desired location
-            FileUtils.copyFile(screenshot, new File(path));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return path;
+        return capture(driver, ArtifactStore.ArtifactKey.adHoc(fileName, driver));
+    }
+
+    /**
+     * Same as {@link #captureScreenshot(AppiumDriver, String)}, filed under the test's
+     * suite, class, method, attempt and device.
+     *
+     * @return Path the screenshot will be written to
+     */
+    public static String captureScreenshot(AppiumDriver driver, ITestResult result) {
+        return capture(driver, ArtifactStore.ArtifactKey.of(result, driver));
+    }
+
+    private static String capture(AppiumDriver driver, ArtifactStore.ArtifactKey key) {
+        byte[] screenshot = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
+        ArtifactStore store = ArtifactStore.getInstance();
+        Path path = store.newPath(ArtifactStore.Type.SCREENSHOT, key);
+        ArtifactWriter.getInstance().submit(path, screenshot, true);
+        store.record(ArtifactStore.Type.SCREENSHOT, key, path);
+        return path.toString();
     }
 //    screenshot test
     public static void main(String[] args) {
@@ -0,0 +1,275 @@
+package utils;
+
+import io.appium.java_client.AppiumBy;
+import io.appium.java_client.AppiumDriver;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Explicit waits with adaptive polling, for sessions that run without an implicit wait.
+ *
+ * Polling starts at a short interval and backs off by a factor up to a maximum, so elements that
+ * are already there are found almost immediately and long waits do not flood the server. Several
+ * conditions can be checked against one {@link PageSnapshot} per poll with {@link #untilAll(Map)},
+ * instead of one findElement round trip each. Every wait is timed per label (usually the locator) and the
+ * numbers can be logged with {@link #logStats()}.
+ *
+ * Negative checks ({@link #isAbsent(By)}) use findElements, which returns at once when the implicit
+ * wait is 0 (the default of a new session), so they take milliseconds instead of the implicit timeout.
+ */
+public class SmartWait {
+
+    private static final Logger logger = LoggerFactory.getLogger(SmartWait.class);
+
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+    public static final Duration INITIAL_POLL = Duration.ofMillis(50);
+    public static final Duration MAX_POLL = Duration.ofSeconds(1);
+    private static final double BACKOFF = 1.5;
+
+    private static final Map<String, WaitStats> STATS = new ConcurrentHashMap<>();
+
+    /**
+     * Wait durations recorded for one label.
+     */
+    public static final class WaitStats {
+        private long waits;
+        private long timeouts;
+        private long totalMillis;
+        private long maxMillis;
+
+        private synchronized void record(long millis, boolean timedOut) {
+            waits++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+            if (timedOut) {
+                timeouts++;
+            }
+        }
+
+        public synchronized long getWaits() {
+            return waits;
+        }
+
+        public synchronized long getTimeouts() {
+            return timeouts;
+        }
+
+        public synchronized long getAverageMillis() {
+            return waits == 0 ? 0 : totalMillis / waits;
+        }
+
+        public synchronized long getMaxMillis() {
+            return maxMillis;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("waits=%d, avg=%dms, max=%dms, timeouts=%d", waits, getAverageMillis(), maxMillis, timeouts);
+        }
+    }
+
+    private final AppiumDriver driver;
+    private final Duration timeout;
+    private final Duration initialPoll;
+    private final Duration maxPoll;
+
+    public SmartWait(AppiumDriver driver) {
+        this(driver, DEFAULT_TIMEOUT);
+    }
+
+    public SmartWait(AppiumDriver driver, Duration timeout) {
+        this(driver, timeout, INITIAL_POLL, MAX_POLL);
+    }
+
+    /**
+     * @param driver      Session to wait on
+     * @param timeout     How long a wait may take before it fails
+     * @param initialPoll First polling interval
+     * @param maxPoll     Longest polling interval after backing off
+     */
+    public SmartWait(AppiumDriver driver, Duration timeout, Duration initialPoll, Duration maxPoll) {
+        this.driver = Objects.requireNonNull(driver, "driver");
+        this.timeout = timeout;
+        this.initialPoll = initialPoll;
+        this.maxPoll = maxPoll;
+    }
+
+    /**
+     * Returns a wait with the same driver and polling but another timeout.
+     */
+    public SmartWait withTimeout(Duration timeout) {
+        return new SmartWait(driver, timeout, initialPoll, maxPoll);
+    }
+
+    /**
+     * Waits until the condition returns a non-null, non-false value and returns it.
+     * NoSuchElement and StaleElementReference exceptions count as "not yet".
+     *
+     * @param label     Name the wait is recorded under, e.g. the locator
+     * @param condition Checked on every poll
+     * @throws TimeoutException If the condition is not met within the timeout
+     */
+    public <T> T until(String label, Function<AppiumDriver, T> condition) {
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        long poll = initialPoll.toMillis();
+        RuntimeException lastError = null;
+        while (true) {
+            try {
+                T value = condition.apply(driver);
+                if (value != null && !Boolean.FALSE.equals(value)) {
+                    record(label, start, false);
+                    return value;
+                }
+            } catch (NoSuchElementException | StaleElementReferenceException e) {
+                lastError = e;
+            }
+            long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+            if (remainingMillis <= 0) {
+                record(label, start, true);
+                throw new TimeoutException("Timed out after " + timeout.toMillis() + " ms waiting for " + label, lastError);
+            }
+            sleep(Math.min(poll, remainingMillis));
+            poll = Math.min((long) (poll * BACKOFF), maxPoll.toMillis());
+        }
+    }
+
+    /**
+     * Waits for an element to be present and returns it.
+     */
+    public WebElement until(By by) {
+        return until(by.toString(), d -> first(d.findElements(by)));
+    }
+
+    /**
+     * Waits for an element to be present and displayed and returns it.
+     */
+    public WebElement untilVisible(By by) {
+        return until("visible " + by, d -> {
+            WebElement element = first(d.findElements(by));
+            return element != null && element.isDisplayed() ? element : null;
+        });
+    }
+
+    /**
+     * Waits until an element is gone.
+     */
+    public void untilAbsent(By by) {
+        until("absent " + by, d -> d.findElements(by).isEmpty());
+    }
+
+    /**
+     * Checks right now, without waiting, that no element matches.
+     */
+    public boolean isAbsent(By by) {
+        long start = System.nanoTime();
+        boolean absent = driver.findElements(by).isEmpty();
+        record("absent now " + by, start, false);
+        return absent;
+    }
+
+    /**
+     * Waits until every condition holds on the same page snapshot, fetching the page source once per
+     * poll however many conditions there are. The last snapshot stays cached for {@link PageSnapshot#of}.
+     *
+     * @param conditions Conditions by label, e.g. from {@link #present(By)}
+     * @throws TimeoutException Naming the conditions that still failed
+     */
+    public void untilAll(Map<String, Predicate<PageSnapshot>> conditions) {
+        String label = "all of " + conditions.keySet();
+        List<String> failing = new ArrayList<>();
+        try {
+            until(label, d -> {
+                PageSnapshot snapshot = PageSnapshot.refresh(d);
+                failing.clear();
+                conditions.forEach((name, condition) -> {
+                    if (!condition.test(snapshot)) {
+                        failing.add(name);
+                    }
+                });
+                return failing.isEmpty();
+            });
+        } catch (TimeoutException e) {
+            throw new TimeoutException("Still not met: " + failing, e);
+        }
+    }
+
+    /**
+     * Waits until every locator is present, checked against one page snapshot per poll.
+     */
+    public void untilAllPresent(By... locators) {
+        Map<String, Predicate<PageSnapshot>> conditions = new LinkedHashMap<>();
+        for (By by : locators) {
+            conditions.put(by.toString(), present(by));
+        }
+        untilAll(conditions);
+    }
+
+    /**
+     * Snapshot condition for an id or accessibility id locator.
+     * Other strategies cannot be answered from a snapshot and are rejected.
+     */
+    public static Predicate<PageSnapshot> present(By by) {
+        if (!(by instanceof By.ById) && !(by instanceof AppiumBy.ByAccessibilityId)) {
+            throw new IllegalArgumentException("Cannot check " + by + " against the page source; use id or accessibilityId");
+        }
+        return snapshot -> snapshot.has(by);
+    }
+
+    /**
+     * Snapshot condition for an element with this exact text (Android) or label/value (iOS).
+     */
+    public static Predicate<PageSnapshot> textPresent(String text) {
+        return snapshot -> snapshot.hasText(text);
+    }
+
+    /**
+     * Returns the recorded wait durations per label.
+     */
+    public static Map<String, WaitStats> stats() {
+        return Map.copyOf(STATS);
+    }
+
+    /**
+     * Logs the recorded waits, slowest average first.
+     */
+    public static void logStats() {
+        STATS.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().getAverageMillis(), a.getValue().getAverageMillis()))
+                .forEach(entry -> logger.info("Wait {}: {}", entry.getKey(), entry.getValue()));
+    }
+
+    private static void record(String label, long startNanos, boolean timedOut) {
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        STATS.computeIfAbsent(label, k -> new WaitStats()).record(millis, timedOut);
+        logger.debug("Wait for {} took {} ms{}", label, millis, timedOut ? " (timed out)" : "");
+    }
+
+    private static WebElement first(List<WebElement> elements) {
+        return elements.isEmpty() ? null : elements.get(0);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TimeoutException("Interrupted while waiting", e);
+        }
+    }
+}
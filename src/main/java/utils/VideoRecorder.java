@@ -1,23 +1,94 @@
 package utils;
 
 import io.appium.java_client.AppiumDriver;
-import io.appium.java_client.android.AndroidDriver;
+import io.appium.java_client.android.AndroidStartScreenRecordingOptions;
+import io.appium.java_client.android.AndroidStopScreenRecordingOptions;
+import io.appium.java_client.ios.IOSDriver;
+import io.appium.java_client.ios.IOSStartScreenRecordingOptions;
+import io.appium.java_client.ios.IOSStopScreenRecordingOptions;
+import io.appium.java_client.screenrecording.BaseStartScreenRecordingOptions;
+import io.appium.java_client.screenrecording.BaseStopScreenRecordingOptions;
+import io.appium.java_client.screenrecording.CanRecordScreen;
+import io.appium.java_client.screenrecording.ScreenRecordingUploadOptions;
+import org.apache.commons.io.input.CharSequenceInputStream;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * Records the device screen through Appium without holding the whole video in memory.
+ *
+ * With a local Appium server the video is uploaded by Appium to {@link RecordingReceiver}
+ * and streamed to disk. With a remote server the Base64 reply is decoded as a stream straight
+ * into a FileChannel, so no decoded copy of the video is ever built in the heap.
+ *
+ * When a segment length is given, the recording is rolled over into a new segment file at that
+ * interval, so a long test never produces one huge payload. To keep only the last few seconds
+ * before a failure without transferring anything for passing tests, see {@link VideoRingBuffer}.
+ */
 public class VideoRecorder {
+    // Android's screenrecord accepts at most 30 minutes per recording.
+    private static final Duration MAX_TIME_LIMIT = Duration.ofMinutes(30);
+    private static final Duration UPLOAD_TIMEOUT = Duration.ofMinutes(2);
+
     private final AppiumDriver driver;
+    private final CanRecordScreen screenRecorder;
     private final String outputDirectory;
+    private final Path workDirectory;
+    private final Duration segmentLength;
+    private final boolean uploadToReceiver;
+    private final List<Path> segments = new ArrayList<>();
+    private final List<Path> savedFiles = new ArrayList<>();
+    private ScheduledExecutorService rotator;
+    private ScheduledFuture<?> rotation;
+    private boolean recording;
     private String currentVideoPath;
 
     public VideoRecorder(AppiumDriver driver, String outputDirectory) {
-        if (!(driver instanceof AndroidDriver || driver instanceof AppiumDriver)) {
+        this(driver, outputDirectory, null);
+    }
+
+    /**
+     * @param driver           Driver of a platform that supports screen recording
+     * @param outputDirectory  Where saved recordings go
+     * @param segmentLength    Length of each rolling segment, or null for a single recording
+     */
+    public VideoRecorder(AppiumDriver driver, String outputDirectory, Duration segmentLength) {
+        if (!(driver instanceof CanRecordScreen)) {
             throw new IllegalArgumentException("Driver does not support screen recording");
         }
+        if (segmentLength != null && segmentLength.compareTo(MAX_TIME_LIMIT) > 0) {
+            throw new IllegalArgumentException("Segment length must not exceed " + MAX_TIME_LIMIT.toMinutes() + " minutes");
+        }
         this.driver = driver;
+        this.screenRecorder = (CanRecordScreen) driver;
         this.outputDirectory = outputDirectory;
+        this.workDirectory = Paths.get(outputDirectory, ".segments");
+        this.segmentLength = segmentLength;
+        this.uploadToReceiver = isLocal(driver.getRemoteAddress());
 
         // Ensure the output directory exists
         File dir = new File(outputDirectory);
@@ -26,32 +97,230 @@ public class VideoRecorder {
         }
     }
 
-    public void startRecording() {
-//        driver.startRecordingScreen();
+    public synchronized void startRecording() {
+        if (recording) {
+            System.out.println("Screen recording already running.");
+            return;
+        }
+        deleteSegments();
+        startSegment();
+        recording = true;
+
+        if (segmentLength != null) {
+            rotator = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "video-rotator");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long millis = segmentLength.toMillis();
+            rotation = rotator.scheduleWithFixedDelay(this::rotate, millis, millis, TimeUnit.MILLISECONDS);
+        }
         System.out.println("Screen recording started.");
     }
 
-    public String stopAndSaveRecording(String fileName) throws IOException {
-//        String base64Video = driver.stopRecordingScreen();
-//        byte[] decodedVideo = Base64.getDecoder().decode(base64Video);
+    /**
+     * Stops recording and moves the recorded segments to the output directory.
+     * A single segment is saved as &lt;fileName&gt;.mp4, several as &lt;fileName&gt;_partNNN.mp4.
+     *
+     * @return Path of the first saved file, or null if nothing was being recorded
+     */
+    public synchronized String stopAndSaveRecording(String fileName) throws IOException {
+        List<Path> saved = stopAndSave(Paths.get(outputDirectory, fileName + ".mp4"));
+        return saved.isEmpty() ? null : saved.get(0).toString();
+    }
+
+    /**
+     * Stops recording and moves the buffered segments to the target path (or to
+     * &lt;stem&gt;_partNNN.mp4 siblings when there are several).
+     *
+     * @param target Path of the saved video
+     * @return Files written, empty if nothing was being recorded
+     */
+    public synchronized List<Path> stopAndSave(Path target) throws IOException {
+        if (!recording) {
+            System.out.println("No screen recording in progress.");
+            return List.of();
+        }
+        stopRotation();
+        recording = false;
+        stopSegment();
+
+        savedFiles.clear();
+        savedFiles.addAll(moveSegments(target));
+        currentVideoPath = savedFiles.isEmpty() ? null : savedFiles.get(0).toString();
+        System.out.println("Screen recording saved at: " + savedFiles);
+        return List.copyOf(savedFiles);
+    }
+
+    /**
+     * Ends the recording without transferring the running segment and deletes buffered segments.
+     * The video still on the device is dropped by the next start (forced restart) or its time limit.
+     */
+    public synchronized void discardRecording() {
+        if (!recording) {
+            return;
+        }
+        stopRotation();
+        recording = false;
+        deleteSegments();
+        System.out.println("Screen recording discarded.");
+    }
+
+    /**
+     * Returns every file written by the last {@link #stopAndSaveRecording(String)}.
+     */
+    public synchronized List<Path> getSavedFiles() {
+        return List.copyOf(savedFiles);
+    }
 
-        currentVideoPath = outputDirectory + File.separator + fileName + ".mp4";
-        try (FileOutputStream fos = new FileOutputStream(currentVideoPath)) {
-//            fos.write(decodedVideo);
+    public synchronized void deleteVideo() {
+        for (Path file : savedFiles) {
+            try {
+                Files.deleteIfExists(file);
+                System.out.println("Screen recording deleted: " + file);
+            } catch (IOException e) {
+                System.err.println("Failed to delete screen recording: " + file);
+            }
         }
+        savedFiles.clear();
+        currentVideoPath = null;
+    }
 
-        System.out.println("Screen recording saved at: " + currentVideoPath);
-        return currentVideoPath;
+    /**
+     * Moves the recorded segments, oldest first, to the target path (or &lt;stem&gt;_partNNN siblings).
+     */
+    private List<Path> moveSegments(Path target) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        String fileName = target.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String stem = dot > 0 ? fileName.substring(0, dot) : fileName;
+        String extension = dot > 0 ? fileName.substring(dot) : "";
+
+        List<Path> moved = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            Path destination = segments.size() == 1
+                    ? target : target.resolveSibling(String.format("%s_part%03d%s", stem, i + 1, extension));
+            Files.move(segments.get(i), destination, StandardCopyOption.REPLACE_EXISTING);
+            moved.add(destination);
+        }
+        segments.clear();
+        return moved;
     }
 
-    public void deleteVideo() {
-        if (currentVideoPath != null) {
-            File videoFile = new File(currentVideoPath);
-            if (videoFile.exists() && videoFile.delete()) {
-                System.out.println("Screen recording deleted: " + currentVideoPath);
-            } else {
-                System.err.println("Failed to delete screen recording: " + currentVideoPath);
+    private void deleteSegments() {
+        for (Path segment : segments) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                System.err.println("Failed to delete video segment: " + segment);
             }
         }
+        segments.clear();
+    }
+
+    private void startSegment() {
+        Duration limit = segmentLength == null ? MAX_TIME_LIMIT : min(segmentLength.plusSeconds(30), MAX_TIME_LIMIT);
+        screenRecorder.startRecordingScreen(startOptions(limit));
+    }
+
+    /**
+     * Stops the running segment and writes it to a new file in the work directory.
+     */
+    private void stopSegment() throws IOException {
+        Files.createDirectories(workDirectory);
+        Path target = workDirectory.resolve(UUID.randomUUID() + ".mp4");
+
+        if (uploadToReceiver) {
+            RecordingReceiver receiver = RecordingReceiver.getInstance();
+            Map.Entry<String, CompletableFuture<Path>> upload = receiver.expect(target);
+            try {
+                screenRecorder.stopRecordingScreen(stopOptions(ScreenRecordingUploadOptions.uploadOptions()
+                        .withRemotePath(upload.getKey())
+                        .withFileFieldName(RecordingReceiver.FILE_FIELD)
+                        .withHttpMethod(ScreenRecordingUploadOptions.RequestMethod.PUT)));
+                upload.getValue().get(UPLOAD_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                receiver.cancel(upload.getKey());
+                throw new IOException("Interrupted while receiving screen recording", e);
+            } catch (ExecutionException | TimeoutException | RuntimeException e) {
+                receiver.cancel(upload.getKey());
+                throw new IOException("Failed to receive screen recording", e);
+            }
+        } else {
+            decodeTo(screenRecorder.stopRecordingScreen(), target);
+        }
+        segments.add(target);
+    }
+
+    private synchronized void rotate() {
+        if (!recording) {
+            return;
+        }
+        try {
+            stopSegment();
+            startSegment();
+        } catch (Exception e) {
+            System.err.println("Failed to roll over screen recording segment: " + e.getMessage());
+        }
+    }
+
+    private void stopRotation() {
+        if (rotation != null) {
+            rotation.cancel(false);
+            rotation = null;
+        }
+        if (rotator != null) {
+            rotator.shutdown();
+            rotator = null;
+        }
+    }
+
+    /**
+     * Decodes Base64 video data chunk by chunk into the target file.
+     */
+    private static void decodeTo(String base64Video, Path target) throws IOException {
+        try (InputStream decoded = Base64.getMimeDecoder().wrap(CharSequenceInputStream.builder()
+                .setCharSequence(base64Video)
+                .setCharset(StandardCharsets.US_ASCII)
+                .setBufferSize(64 * 1024)
+                .get());
+             FileChannel channel = FileChannel.open(target,
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.transferFrom(Channels.newChannel(decoded), 0, Long.MAX_VALUE);
+        }
+    }
+
+    private BaseStartScreenRecordingOptions<?> startOptions(Duration timeLimit) {
+        if (driver instanceof IOSDriver) {
+            return IOSStartScreenRecordingOptions.startScreenRecordingOptions()
+                    .withTimeLimit(timeLimit)
+                    .enableForcedRestart();
+        }
+        return AndroidStartScreenRecordingOptions.startScreenRecordingOptions()
+                .withTimeLimit(timeLimit)
+                .enableForcedRestart();
+    }
+
+    private BaseStopScreenRecordingOptions<?> stopOptions(ScreenRecordingUploadOptions uploadOptions) {
+        if (driver instanceof IOSDriver) {
+            return IOSStopScreenRecordingOptions.stopScreenRecordingOptions().withUploadOptions(uploadOptions);
+        }
+        return AndroidStopScreenRecordingOptions.stopScreenRecordingOptions().withUploadOptions(uploadOptions);
+    }
+
+    private static boolean isLocal(URL serverUrl) {
+        if (serverUrl == null) {
+            return false;
+        }
+        String host = serverUrl.getHost();
+        return "localhost".equalsIgnoreCase(host) || "127.0.0.1".equals(host) || "::1".equals(host);
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
     }
 }
@@ -0,0 +1,214 @@
+package utils;
+
+import base.AdbClient;
+import io.appium.java_client.AppiumDriver;
+import io.appium.java_client.android.AndroidDriver;
+import org.openqa.selenium.Capabilities;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rolling screen recording kept on the Android device itself.
+ *
+ * A small loop on the device runs "screenrecord" for one segment at a time and writes the segments
+ * round-robin into keepSegments + 1 files under /data/local/tmp, so the device always holds roughly
+ * the last keepSegments segments plus the one being written. Nothing is transferred while recording:
+ * {@link #discard()} stops the loop and deletes the files on the device, and only
+ * {@link #stopAndSave(Path)} pulls the retained window to the host, e.g. for a failed test.
+ *
+ * Needs a local adb server that sees the device; see {@link #forDriver}.
+ */
+public class VideoRingBuffer {
+
+    private static final String DEVICE_DIRECTORY = "/data/local/tmp";
+    // screenrecord refuses time limits above 3 minutes
+    private static final Duration MAX_SEGMENT_LENGTH = Duration.ofMinutes(3);
+    private static final Duration SHELL_TIMEOUT = Duration.ofSeconds(15);
+    private static final int PULL_TIMEOUT_SECONDS = 120;
+
+    // Whether the local adb server answered; probed once per run
+    private static volatile Boolean adbServerReachable;
+
+    private final AdbClient adb;
+    private final String serial;
+    private final Duration segmentLength;
+    private final int keepSegments;
+    private final String prefix = DEVICE_DIRECTORY + "/vrb_" + UUID.randomUUID().toString().substring(0, 8);
+    private String loopPid;
+
+    /**
+     * @param serial        adb serial of the device
+     * @param segmentLength Length of one segment, at most 3 minutes
+     * @param keepSegments  Finished segments kept on the device besides the running one
+     */
+    public VideoRingBuffer(String serial, Duration segmentLength, int keepSegments) {
+        if (keepSegments < 1) {
+            throw new IllegalArgumentException("Ring buffer must keep at least 1 segment");
+        }
+        if (segmentLength.compareTo(MAX_SEGMENT_LENGTH) > 0) {
+            throw new IllegalArgumentException("Segment length must not exceed " + MAX_SEGMENT_LENGTH.toSeconds() + " seconds");
+        }
+        this.adb = AdbClient.getDefault();
+        this.serial = serial;
+        this.segmentLength = segmentLength;
+        this.keepSegments = keepSegments;
+    }
+
+    /**
+     * Returns a buffer for the device of an Android session on a local Appium server, or null when
+     * the device cannot be reached through a local adb server (iOS, cloud grids, no adb).
+     */
+    public static VideoRingBuffer forDriver(AppiumDriver driver, Duration segmentLength, int keepSegments) {
+        if (!(driver instanceof AndroidDriver) || !isLocal(driver.getRemoteAddress())) {
+            return null;
+        }
+        String serial = serial(driver.getCapabilities());
+        if (serial == null) {
+            return null;
+        }
+        Boolean reachable = adbServerReachable;
+        if (reachable == null) {
+            reachable = AdbClient.getDefault().isServerRunning();
+            adbServerReachable = reachable;
+        }
+        return reachable ? new VideoRingBuffer(serial, segmentLength, keepSegments) : null;
+    }
+
+    public synchronized boolean isRecording() {
+        return loopPid != null;
+    }
+
+    /**
+     * Starts the recording loop on the device in the background.
+     */
+    public synchronized void start() throws IOException {
+        if (loopPid != null) {
+            return;
+        }
+        int slots = keepSegments + 1;
+        String loop = "i=0; while true; do screenrecord --time-limit " + segmentLength.toSeconds() + " "
+                + prefix + "_$((i % " + slots + ")).mp4; i=$((i + 1)); done";
+        String output = shell("nohup sh -c '" + loop + "' >/dev/null 2>&1 & echo $!").trim();
+        if (!output.matches("\\d+")) {
+            throw new IOException("Could not start screen recording loop on " + serial + ": " + output);
+        }
+        loopPid = output;
+        System.out.println("Screen recording ring buffer started on " + serial + " (" + prefix + "_*.mp4)");
+    }
+
+    /**
+     * Stops recording and deletes the segments on the device without transferring them.
+     */
+    public synchronized void discard() {
+        if (loopPid == null) {
+            return;
+        }
+        try {
+            shell("kill " + loopPid + "; pkill -f " + prefix + "_; rm -f " + prefix + "_*.mp4");
+        } catch (IOException e) {
+            System.err.println("Failed to discard screen recording on " + serial + ": " + e.getMessage());
+        } finally {
+            loopPid = null;
+        }
+    }
+
+    /**
+     * Stops recording, lets the running segment finish its file and pulls the retained segments,
+     * oldest first. One segment becomes the target itself; several become &lt;stem&gt;_partNNN&lt;ext&gt;.
+     *
+     * @param target Path of the saved video
+     * @return Files written, empty if nothing was being recorded
+     */
+    public synchronized List<Path> stopAndSave(Path target) throws IOException {
+        if (loopPid == null) {
+            return List.of();
+        }
+        List<String> remoteFiles;
+        try {
+            // SIGINT makes screenrecord write the mp4 trailer; wait up to 5s for it to exit
+            String output = shell("kill " + loopPid + "; pkill -INT -f " + prefix + "_; "
+                    + "n=0; while pgrep -f " + prefix + "_ >/dev/null && [ $n -lt 50 ]; do sleep 0.1; n=$((n + 1)); done; "
+                    + "ls -tr " + prefix + "_*.mp4 2>/dev/null");
+            remoteFiles = Arrays.stream(output.split("\n")).map(String::trim).filter(line -> line.endsWith(".mp4")).toList();
+        } finally {
+            loopPid = null;
+        }
+
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        String fileName = target.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String stem = dot > 0 ? fileName.substring(0, dot) : fileName;
+        String extension = dot > 0 ? fileName.substring(dot) : "";
+
+        List<Path> saved = new ArrayList<>();
+        try {
+            for (int i = 0; i < remoteFiles.size(); i++) {
+                Path destination = remoteFiles.size() == 1
+                        ? target : target.resolveSibling(String.format("%s_part%03d%s", stem, i + 1, extension));
+                pull(remoteFiles.get(i), destination);
+                saved.add(destination);
+            }
+        } finally {
+            shell("rm -f " + prefix + "_*.mp4");
+        }
+        System.out.println("Screen recording saved at: " + saved);
+        return saved;
+    }
+
+    private String shell(String command) throws IOException {
+        return adb.shell(serial, command, SHELL_TIMEOUT).output();
+    }
+
+    /**
+     * Copies one file from the device with "adb pull"; only used for failed tests.
+     */
+    private void pull(String remote, Path local) throws IOException {
+        Process process = new ProcessBuilder("adb", "-s", serial, "pull", remote, local.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            if (!process.waitFor(PULL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("adb pull timed out after " + PULL_TIMEOUT_SECONDS + "s: " + remote);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+            throw new IOException("Interrupted while pulling " + remote, e);
+        }
+        if (process.exitValue() != 0) {
+            throw new IOException("adb pull failed with status " + process.exitValue() + ": " + remote);
+        }
+    }
+
+    private static String serial(Capabilities capabilities) {
+        for (String name : new String[]{"appium:udid", "udid", "appium:deviceUDID", "deviceUDID"}) {
+            Object value = capabilities.getCapability(name);
+            if (value != null && !value.toString().isBlank()) {
+                return value.toString();
+            }
+        }
+        return null;
+    }
+
+    private static boolean isLocal(URL serverUrl) {
+        if (serverUrl == null) {
+            return false;
+        }
+        String host = serverUrl.getHost();
+        return "localhost".equalsIgnoreCase(host) || "127.0.0.1".equals(host) || "::1".equals(host);
+    }
+}
@@ -1,13 +1,11 @@
 package utils;
 
-import io.appium.java_client.AppiumBy;
 import io.appium.java_client.AppiumDriver;
 import io.appium.java_client.android.options.UiAutomator2Options;
-import org.openqa.selenium.WebDriver;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Set;
+import java.time.Duration;
 
 public class WebViewSwitcher {
     private final AppiumDriver driver;
@@ -18,27 +16,25 @@ public class WebViewSwitcher {
 
     public void switchToWebView() {
         try {
-            // Cast driver to WebDriver if necessary
-            WebDriver webDriver = (WebDriver) driver;
-
-            // Get available contexts
-            Set<String> contexts = (Set<String>) driver.executeScript("mobile: getContexts");
-            System.out.println("Available contexts: " + contexts);
-
-            // Switch to the WebView context
-            for (String context : contexts) {
-                if (context.contains("WEBVIEW")) {
-                    driver.executeScript("mobile: switchToContext", context);
-                    System.out.println("Switched to WebView: " + context);
-                    return;
-                }
-            }
+            // The session's context manager skips the switch if a WebView is already active and
+            // only lists contexts when no WebView is known yet
+            String context = ContextManager.forDriver(driver).switchToWebView();
+            System.out.println("Switched to WebView: " + context);
+        } catch (IllegalStateException e) {
             System.out.println("No WebView context found.");
         } catch (Exception e) {
             System.err.println("Error switching to WebView: " + e.getMessage());
         }
     }
 
+    /**
+     * Waits for the WebView of an app package (or bundle id, or page title) and switches to it.
+     */
+    public void switchToWebView(String packageOrTitle, Duration timeout) {
+        String context = ContextManager.forDriver(driver).waitForWebView(packageOrTitle, timeout);
+        System.out.println("Switched to WebView: " + context);
+    }
+
     public static void main(String[] args) {
         try {
             // Set Desired Capabilities for Android
@@ -1,42 +1,82 @@
 package tests;
 
+import api.ApiClient;
 import api.ApiService;
-import io.restassured.RestAssured;
-import io.restassured.response.Response;
-import org.openqa.selenium.By;
+import api.StubServer;
+import api.TestDataSeeder;
+import listeners.TestDataSeedingListener;
 import org.openqa.selenium.WebDriver;
+import org.testng.Assert;
+import org.testng.ITestContext;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
+import utils.LocatorRepository;
+
+import java.io.IOException;
+import java.util.List;
 
 public class APITest {
     WebDriver driver;
-    public static void main(String[] args) {
+    // Run with -Dapi.stub=false to call the real backends
+    StubServer stubServer;
+    String postsBaseUrl = "https://jsonplaceholder.typicode.com";
+
+    public static void main(String[] args) throws IOException {
         APITest apiTest = new APITest();
-        apiTest.apiTest();
-        apiTest.restAssureTest();
+        apiTest.startStubServer();
+        try {
+            apiTest.apiTest();
+            apiTest.restAssureTest();
+        } finally {
+            apiTest.stopStubServer();
+        }
+    }
+    @BeforeClass
+    public void startStubServer() throws IOException {
+        if (Boolean.parseBoolean(System.getProperty("api.stub", "true"))) {
+            stubServer = StubServer.fromResource("stubs/api-stubs.json").install();
+            postsBaseUrl = stubServer.baseUrl();
+        }
+    }
+    @AfterClass(alwaysRun = true)
+    public void stopStubServer() throws IOException {
+        if (stubServer != null) {
+            stubServer.close();
+        }
     }
     public void apiTest(){
-        RestAssured.baseURI = "https://jsonplaceholder.typicode.com";
+        // A client per base URL instead of changing the global RestAssured.baseURI
+        ApiClient.ApiResponse response = ApiClient.forBaseUrl(postsBaseUrl).get("/posts/1");
 
-        Response response = RestAssured
-                .given()
-                .get("/posts/1");
-
-        System.out.println("Status Code: " + response.getStatusCode());
-        System.out.println("Response Body: " + response.getBody().asString());
+        System.out.println("Status Code: " + response.statusCode());
+        System.out.println("Response Body: " + response.bodyAsString());
     }
     public void restAssureTest(){
         // Call the authenticate method
-        Response response = ApiService.authenticate("testuser", "testpassword");
+        ApiClient.ApiResponse response = ApiService.authenticate("testuser", "testpassword");
 
         // Print the response details
-        System.out.println("Status Code: " + response.getStatusCode());
-        System.out.println("Response Body: " + response.getBody().asString());
+        System.out.println("Status Code: " + response.statusCode());
+        System.out.println("Response Body: " + response.bodyAsString());
     }
     @Test
     public void testLoginWithApiSetup() {
-        Response response = ApiService.authenticate("user", "pass");
-        String authToken = response.jsonPath().getString("token");
-        driver.findElement(By.id("auth-token-field")).sendKeys(authToken);
+        // Shared with every other test logging in as this user while the token is valid
+        String authToken = ApiService.token("user", "pass");
+        LocatorRepository.forPlatform("android").find(driver, "auth.tokenField").sendKeys(authToken);
+    }
+    @Test
+    public void seededPostsBelongToSeededUser(ITestContext context) {
+        // Filled by TestDataSeedingListener when the suite runs with -Dapi.seed=true
+        List<TestDataSeeder.Created> users = TestDataSeedingListener.seeded(context, "users");
+        List<TestDataSeeder.Created> posts = TestDataSeedingListener.seeded(context, "posts");
+        if (users.isEmpty() || posts.isEmpty()) {
+            throw new SkipException("No seeded test data; run the suite with -Dapi.seed=true");
+        }
+        for (TestDataSeeder.Created post : posts) {
+            Assert.assertEquals(post.response().path("userId").asText(), users.get(0).id());
+        }
     }
-
 }
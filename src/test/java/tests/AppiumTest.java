@@ -1,100 +1,147 @@
 package tests;
 
-import base.AppiumServerManager;
+import base.AppiumServerPool;
+import base.DriverSessionPool;
 import base.EmulatorManager;
 import base.EmulatorManagerOld;
+import base.EmulatorPool;
 import io.appium.java_client.AppiumDriver;
-import io.appium.java_client.android.AndroidDriver;
+import io.appium.java_client.InteractsWithApps;
+import io.appium.java_client.appmanagement.ApplicationState;
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 import utils.CapabilitiesLoader;
+import utils.SmartWait;
 
-import java.net.MalformedURLException;
+import java.lang.reflect.Method;
 import java.net.URL;
 import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
 public class AppiumTest {
-    protected AppiumServerManager appiumServerManager;
-    protected EmulatorManager emulatorManager;
+    protected EmulatorPool emulatorPool;
+    protected AppiumServerPool serverPool;
+    protected DriverSessionPool sessionPool;
+    private static final String APP_PACKAGE = "com.ins.smarthomemini.debug";
+    private static final long LEASE_TIMEOUT_MINUTES = 5;
+
+    // Emulator, server and session of the test method running on this thread
+    private record Lease(EmulatorManager emulator, URL serverUrl, AppiumDriver driver) {
+    }
+
+    private final ThreadLocal<Lease> leases = new ThreadLocal<>();
     @BeforeClass
     public void startEmulator(){
-        // Provide your AVD name and fallback partial path
-        String avdName = "Pixel_8_Pro_Haneul_API_35_1";
+        // AVDs come from appium.parallel.devicePool; the SDK path is the fallback if ANDROID_HOME is unset
         String partialSdkPath = "/Library/Android/sdk";
-        emulatorManager = new EmulatorManager(avdName,partialSdkPath);
-//        emulatorManager.verifyAvdList();
-//        emulatorManager.ensureEmulatorPermissions();
-        emulatorManager.startEmulator(false, 180);
-        appiumServerManager = new AppiumServerManager();
-        appiumServerManager.startServer();
-        System.out.println(appiumServerManager.getServerUrl());
+        emulatorPool = EmulatorPool.fromConfig(partialSdkPath);
+        emulatorPool.start(false, 180);
+        // One server per parallel worker, sized by appium.server.pool in appium.config.json
+        serverPool = AppiumServerPool.fromConfig();
+        serverPool.start();
+        sessionPool = DriverSessionPool.fromConfig();
     }
     @Test
-    public void testLoadFromCapabilitiesLoader()
+    public void testLoadFromCapabilitiesLoader() {
+        // Leased in leaseSession(); a warm session is reused when one is idle
+        AppiumDriver driver = leases.get().driver();
 
-    {
-        // Define platform and environment
-        String platform = "android"; // or "ios"
-        String environment = "dev"; // or "prod"
+        // Perform operations with the driver
+        System.out.println("Driver started successfully! Session: " + driver.getSessionId());
+    }
 
+    /**
+     * Leases a session for test methods that run on the pooled session. The session is released in
+     * {@link #releaseSession()}, which TestNG runs after the listeners' onTestFailure, so failure
+     * screenshots and videos still see the driver and the failing app state.
+     */
+    @BeforeMethod
+    public void leaseSession(Method method) {
+        DesiredCapabilities capabilities = capabilitiesFor(method.getName());
+        if (capabilities == null) {
+            return;
+        }
+        EmulatorManager emulator = emulatorPool.lease(LEASE_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        URL serverUrl = null;
         try {
-            // Load capabilities
-            CapabilitiesLoader loader = new CapabilitiesLoader();
-            DesiredCapabilities capabilities = loader.loadCapabilities(platform, environment);
+            serverUrl = serverPool.lease(LEASE_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            // Pin the session to the leased emulator
+            capabilities.setCapability("appium:udid", emulator.getSerial());
+            leases.set(new Lease(emulator, serverUrl, sessionPool.lease(serverUrl, capabilities)));
+        } catch (RuntimeException e) {
+            if (serverUrl != null) {
+                serverPool.release(serverUrl);
+            }
+            emulatorPool.release(emulator);
+            throw e;
+        }
+    }
 
-            // Define the Appium server URL
-            URL appiumServerUrl = new URL("http://localhost:4723");
+    @AfterMethod(alwaysRun = true)
+    public void releaseSession() {
+        Lease lease = leases.get();
+        leases.remove();
+        if (lease == null) {
+            return;
+        }
+        try {
+            // Return the session to the pool
+            sessionPool.release(lease.driver());
+        } finally {
+            serverPool.release(lease.serverUrl());
+            emulatorPool.release(lease.emulator());
+        }
+    }
 
-            // Initialize the driver based on the platform
-            AppiumDriver driver;
-            driver = new AndroidDriver(appiumServerUrl, capabilities);
+    @Test
+    public void appiumTest1() {
+        AppiumDriver driver = leases.get().driver();
 
-            // Perform operations with the driver
-            System.out.println("Driver started successfully!");
+        // No implicit wait: explicit waits poll adaptively and return as soon as the app is up
+        SmartWait wait = new SmartWait(driver, Duration.ofSeconds(30));
+        wait.until("app in foreground", d -> ((InteractsWithApps) d)
+                .queryAppState(APP_PACKAGE) == ApplicationState.RUNNING_IN_FOREGROUND);
 
-            // Clean up (quit driver)
-            driver.quit();
+        System.out.println("Appium driver initialized successfully!");
+    }
 
-        } catch (MalformedURLException e) {
-            throw new RuntimeException("Invalid Appium server URL!", e);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize Appium driver!", e);
-        }
+    /**
+     * Capabilities of the session a test method runs on, or null if it manages its own session.
+     */
+    private static DesiredCapabilities capabilitiesFor(String testName) {
+        return switch (testName) {
+            // Android "dev" profile from config/capabilities (use "ios" / "prod" for the others)
+            case "testLoadFromCapabilitiesLoader" -> new CapabilitiesLoader().loadCapabilities("android", "dev");
+            case "appiumTest1" -> smartHomeCapabilities();
+            default -> null;
+        };
     }
-    @Test
-    public void appiumTest1() {
+
+    private static DesiredCapabilities smartHomeCapabilities() {
         DesiredCapabilities capabilities = new DesiredCapabilities();
         capabilities.setCapability("platformName", "Android");
         capabilities.setCapability("appium:automationName", "UiAutomator2");
         capabilities.setCapability("appium:deviceName", "Pixel 8 Pro Haneul API 35");
         capabilities.setCapability("appium:appActivity", "com.ins.smarthomemini.presentation.app.MainActivity");
-        capabilities.setCapability("appium:appPackage", "com.ins.smarthomemini.debug");
+        capabilities.setCapability("appium:appPackage", APP_PACKAGE);
         capabilities.setCapability("appium:isHeadless", false);
-
-        try {
-            URL appiumServerUrl = new URL("http://127.0.0.1:4723");
-            AppiumDriver driver = new AndroidDriver(appiumServerUrl, capabilities);
-
-            // Set implicit wait timeout
-            driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(30));
-
-            System.out.println("Appium driver initialized successfully!");
-
-            // Perform your test actions here
-
-            // Quit the driver
-            driver.quit();
-        } catch (MalformedURLException e) {
-            throw new RuntimeException("Invalid Appium server URL!", e);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize Appium driver!", e);
-        }
+        return capabilities;
     }
-    @AfterClass
+    @AfterClass(alwaysRun = true)
     public void closeAppium(){
-        appiumServerManager.stopServer();
+        if (sessionPool != null) {
+            sessionPool.close();
+        }
+        if (serverPool != null) {
+            serverPool.close();
+        }
+        if (emulatorPool != null) {
+            emulatorPool.close();
+        }
     }
 }
 
@@ -0,0 +1,53 @@
+package tests;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import utils.JsonPathExpression;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+public class JsonPathExpressionTest {
+
+    private static final String JSON = "{\"appium\":{\"server\":{\"port\":4723},"
+            + "\"drivers\":{\"xcuitest\":{\"simulators\":[{\"automationName\":\"XCUITest\"},{\"automationName\":\"Other\"}]}},"
+            + "\"plugins\":{\"device-farm\":{\"enabled\":true}},\"a.b\":1}}";
+
+    @Test
+    public void evaluatesAgainstTree() throws Exception {
+        JsonNode root = new ObjectMapper().readTree(JSON);
+
+        Assert.assertEquals(JsonPathExpression.compile("appium.drivers.xcuitest.simulators[1].automationName")
+                .evaluateText(root, "N/A"), "Other");
+        Assert.assertEquals(JsonPathExpression.compile("appium['a.b']").evaluate(root).asInt(), 1);
+        Assert.assertEquals(JsonPathExpression.compile("appium.missing[3].value").evaluateText(root, "N/A"), "N/A");
+    }
+
+    @Test
+    public void extractsSeveralPathsInOnePass() throws Exception {
+        JsonPathExpression automationName = JsonPathExpression.compile("appium.drivers.xcuitest.simulators[0].automationName");
+        JsonPathExpression port = JsonPathExpression.compile("appium.server.port");
+        JsonPathExpression server = JsonPathExpression.compile("appium.server");
+        JsonPathExpression enabled = JsonPathExpression.compile("appium.plugins.device-farm.enabled");
+        JsonPathExpression missing = JsonPathExpression.compile("appium.drivers.uiautomator2");
+
+        Map<JsonPathExpression, JsonNode> values = JsonPathExpression.extract(
+                new ByteArrayInputStream(JSON.getBytes(StandardCharsets.UTF_8)),
+                List.of(automationName, port, server, enabled, missing));
+
+        Assert.assertEquals(values.get(automationName).asText(), "XCUITest");
+        Assert.assertEquals(values.get(port).asInt(), 4723);
+        Assert.assertEquals(values.get(server).path("port").asInt(), 4723);
+        Assert.assertTrue(values.get(enabled).asBoolean());
+        Assert.assertTrue(values.get(missing).isMissingNode());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void rejectsMalformedIndex() {
+        JsonPathExpression.compile("appium.drivers[first]");
+    }
+}
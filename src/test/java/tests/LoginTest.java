@@ -1,85 +1,67 @@
 package tests;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.appium.java_client.AppiumDriver;
 import io.appium.java_client.android.options.UiAutomator2Options;
+import org.openqa.selenium.remote.DesiredCapabilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.*;
-import utils.CapabilitiesLoader;
+import utils.CapabilityResolver;
+import utils.JsonPathExpression;
 
-import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
 import java.util.Map;
 
 public class LoginTest {
 
     private AppiumDriver driver;
-    private static Map config;
-    CapabilitiesLoader loader;
     private static final Logger logger = LoggerFactory.getLogger(LoginTest.class);
 
     @BeforeClass
-    public void setUp() throws Exception {
-        // 3. Read server config from the Map
-        Map<String, Object> serverConfig = (Map<String, Object>) config.get("server");
-        String host = getStringOrDefault(serverConfig, "host", "127.0.0.1");
-        int port = getIntOrDefault(serverConfig, "port", 4723);
+    public void setUp() {
+        // Global, driver, device and environment capabilities are merged once per device,
+        // with APPIUM_CAPABILITIES / -Dcapability.* overrides applied on top
+        CapabilityResolver resolver = CapabilityResolver.getInstance();
+        DesiredCapabilities capabilities = resolver.resolve("uiautomator2", null, "dev");
 
-        // 4. Select which driver config to use based on test or environment
-        //    For demonstration, let's assume we're using the Android "uiautomator2" driver
-        Map<String, Object> driverMap = (Map<String, Object>) ((Map<String, Object>) config.get("driver")).get("uiautomator2");
+        // APPIUM_HOST and APPIUM_PORT can override the server block of the JSON config
+        URL serverUrl = resolver.serverUrl();
+        driver = new AppiumDriver(serverUrl, capabilities);
 
-        // 5. Build AppiumOptions (could be UiAutomator2Options, XCUITestOptions, etc.)
-        UiAutomator2Options options = new UiAutomator2Options();
-        options.setAutomationName(getStringOrDefault(driverMap, "automationName", "UiAutomator2"));
-        options.setPlatformName(getStringOrDefault(driverMap, "platformName", "Android"));
-        options.setAppActivity(getStringOrDefault(driverMap, "appActivity", "com.ins.smarthomemini.presentation.app.MainActivity"));
-
-        // 6. (Optional) Handle environment variable overrides:
-        //    APPIUM_HOST and APPIUM_PORT can override JSON config
-        String envHost = System.getenv("APPIUM_HOST");
-        if (envHost != null) {
-            host = envHost;
-        }
-        String envPort = System.getenv("APPIUM_PORT");
-        if (envPort != null) {
-            port = Integer.parseInt(envPort);
-        }
-
-        // 7. Initialize the driver
-        String remoteURL = String.format("http://%s:%d", host, port);
-        driver = new AppiumDriver(new java.net.URL(remoteURL), options);
-
-        System.out.println("Driver initialized. Host: " + host + ", Port: " + port);
-        logger.info("Driver initialized. Host: " + host + ", Port: " + port);
+        logger.info("Driver initialized. Server: {}", serverUrl);
     }
     @Test
     public void readDataFromJsonConfig(){
         try {
-            // Load the JSON file
-            String filePath = "path/to/your.json"; // Replace with your JSON file path
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode rootNode = mapper.readTree(new File(filePath));
-
-            // Extract data for UiAutomator2Options
-            JsonNode uiautomator2Node = rootNode
-                    .path("appium")
-                    .path("drivers")
-                    .path("uiautomator2")
-                    .path("emulators")
-                    .get(0); // Assuming you want the first emulator configuration
+            // Pull every emulator setting out of the config in one pass over the file
+            String emulator = "appium.drivers.uiautomator2.emulators[0].";
+            JsonPathExpression automationName = JsonPathExpression.compile(emulator + "automationName");
+            JsonPathExpression platformName = JsonPathExpression.compile(emulator + "platformName");
+            JsonPathExpression platformVersion = JsonPathExpression.compile(emulator + "platformVersion");
+            JsonPathExpression deviceName = JsonPathExpression.compile(emulator + "deviceName");
+            JsonPathExpression app = JsonPathExpression.compile(emulator + "app");
+            JsonPathExpression appActivity = JsonPathExpression.compile(emulator + "appActivity");
+            JsonPathExpression appPackage = JsonPathExpression.compile(emulator + "appPackage");
+
+            Map<JsonPathExpression, JsonNode> values;
+            try (InputStream in = getClass().getClassLoader().getResourceAsStream("config/appium.config.json")) {
+                values = JsonPathExpression.extract(in, List.of(automationName, platformName, platformVersion,
+                        deviceName, app, appActivity, appPackage));
+            }
 
             // Create and configure UiAutomator2Options
             UiAutomator2Options options = new UiAutomator2Options();
 
-            options.setAutomationName(uiautomator2Node.path("automationName").asText("UiAutomator2"));
-            options.setPlatformName(uiautomator2Node.path("platformName").asText("Android"));
-            options.setPlatformVersion(uiautomator2Node.path("platformVersion").asText("13.0"));
-            options.setDeviceName(uiautomator2Node.path("deviceName").asText("Default Device"));
-            options.setApp(uiautomator2Node.path("app").asText());
-            options.setAppActivity(uiautomator2Node.path("appActivity").asText("DefaultActivity"));
-            options.setAppPackage(uiautomator2Node.path("appPackage").asText("DefaultPackage"));
+            options.setAutomationName(values.get(automationName).asText("UiAutomator2"));
+            options.setPlatformName(values.get(platformName).asText("Android"));
+            options.setPlatformVersion(values.get(platformVersion).asText("13.0"));
+            options.setDeviceName(values.get(deviceName).asText("Default Device"));
+            options.setApp(values.get(app).asText());
+            options.setAppActivity(values.get(appActivity).asText("DefaultActivity"));
+            options.setAppPackage(values.get(appPackage).asText("DefaultPackage"));
 
             // Print configured options
             System.out.println("Configured UiAutomator2Options:");
@@ -110,20 +92,4 @@ public class LoginTest {
             driver.quit();
         }
     }
-
-    // Utility methods for reading map values
-    private String getStringOrDefault(Map<String, Object> map, String key, String defaultVal) {
-        Object value = map.get(key);
-        return value == null ? defaultVal : value.toString();
-    }
-
-    private int getIntOrDefault(Map<String, Object> map, String key, int defaultVal) {
-        Object value = map.get(key);
-        if (value == null) return defaultVal;
-        try {
-            return Integer.parseInt(value.toString());
-        } catch (NumberFormatException e) {
-            return defaultVal;
-        }
-    }
 }
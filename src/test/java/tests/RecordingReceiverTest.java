@@ -0,0 +1,77 @@
+package tests;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import utils.RecordingReceiver;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class RecordingReceiverTest {
+
+    private static final HttpClient HTTP = HttpClient.newHttpClient();
+
+    // Contains CR/LF and a near-delimiter so the boundary search has to back off correctly
+    private static final byte[] VIDEO = "\u0000\u0001ftypmp42\r\n--abc\r\n-\r\r\n--bound\u00ff\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    @Test
+    public void writesOnlyTheFilePartOfAMultipartUpload() throws Exception {
+        String boundary = "boundary42";
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"note\"\r\n\r\n"
+                + "not the video\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"video.mp4\"\r\n"
+                + "Content-Type: video/mp4\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        body.write(VIDEO);
+        body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+
+        Path target = Files.createTempDirectory("recording").resolve("video.mp4");
+        Map.Entry<String, CompletableFuture<Path>> upload = RecordingReceiver.getInstance().expect(target);
+
+        int status = put(upload.getKey(), "multipart/form-data; boundary=" + boundary, body.toByteArray());
+
+        Assert.assertEquals(status, 200);
+        Assert.assertEquals(upload.getValue().get(5, TimeUnit.SECONDS), target);
+        Assert.assertEquals(Files.readAllBytes(target), VIDEO);
+    }
+
+    @Test
+    public void writesARawVideoBodyAsIs() throws Exception {
+        Path target = Files.createTempDirectory("recording").resolve("video.mp4");
+        Map.Entry<String, CompletableFuture<Path>> upload = RecordingReceiver.getInstance().expect(target);
+
+        Assert.assertEquals(put(upload.getKey(), "video/mp4", VIDEO), 200);
+        upload.getValue().get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(Files.readAllBytes(target), VIDEO);
+    }
+
+    @Test
+    public void rejectsOtherContentTypes() throws Exception {
+        Path target = Files.createTempDirectory("recording").resolve("video.mp4");
+        Map.Entry<String, CompletableFuture<Path>> upload = RecordingReceiver.getInstance().expect(target);
+
+        Assert.assertEquals(put(upload.getKey(), "text/plain", VIDEO), 415);
+        Assert.assertThrows(ExecutionException.class, () -> upload.getValue().get(5, TimeUnit.SECONDS));
+        Assert.assertFalse(Files.exists(target));
+    }
+
+    private static int put(String url, String contentType, byte[] body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", contentType)
+                .PUT(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        return HTTP.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
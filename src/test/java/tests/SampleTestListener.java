@@ -1,9 +1,10 @@
 package tests;
 
+import base.DriverRegistry;
 import io.appium.java_client.AppiumDriver;
 import io.appium.java_client.android.AndroidDriver;
 import io.appium.java_client.android.options.UiAutomator2Options;
-import org.testng.ITestContext;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -11,10 +12,9 @@ import java.net.MalformedURLException;
 import java.net.URL;
 
 public class SampleTestListener {
-    private AppiumDriver driver;
 
     @BeforeMethod
-    public void setupDriver(ITestContext context) throws MalformedURLException {
+    public void setupDriver() throws MalformedURLException {
         UiAutomator2Options options = new UiAutomator2Options();
         options.setPlatformName("Android");
         options.setDeviceName("MyDevice");
@@ -24,8 +24,17 @@ public class SampleTestListener {
         URL appiumServerUrl = new URL("http://127.0.0.1:4723");
         AppiumDriver driver = new AndroidDriver(appiumServerUrl, options);
 
-        // Store the driver in the TestNG context
-        context.setAttribute("driver", driver);
+        // Bind the driver to this test thread so listeners find it
+        DriverRegistry.register(driver);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDownDriver() {
+        AppiumDriver driver = DriverRegistry.get();
+        DriverRegistry.unregister();
+        if (driver != null) {
+            driver.quit();
+        }
     }
 
     @Test
@@ -0,0 +1,61 @@
+package tests;
+
+import api.ApiClient;
+import api.ApiService;
+import api.StubServer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+public class StubServerTest {
+
+    @Test
+    public void replaysStoreThroughApiService() throws Exception {
+        try (StubServer server = StubServer.fromResource("stubs/api-stubs.json").install()) {
+            ApiClient.ApiResponse response = ApiService.authenticate("user", "pass");
+
+            Assert.assertEquals(response.statusCode(), 200);
+            Assert.assertEquals(response.json().path("token").asText(), "stub-token");
+            Assert.assertEquals(ApiService.client().get("/missing").statusCode(), 404);
+            Assert.assertEquals(server.requestCount(), 2);
+        }
+        Assert.assertNotEquals(ApiService.client().getBaseUri().getHost(), "127.0.0.1");
+    }
+
+    @Test
+    public void injectsLatencyAndErrors() throws Exception {
+        try (StubServer server = StubServer.create()
+                .stub("GET", "/health", 200, Map.of("ok", true))
+                .latency(Duration.ofMillis(50), Duration.ofMillis(50))
+                .errors(1.0, 503)
+                .start()) {
+            long start = System.nanoTime();
+            ApiClient.ApiResponse response = ApiClient.forBaseUrl(server.baseUrl()).get("/health");
+
+            Assert.assertEquals(response.statusCode(), 503);
+            Assert.assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+        }
+    }
+
+    @Test
+    public void recordsResponsesForReplay() throws Exception {
+        Path store = Files.createTempFile("api-stubs", ".json");
+        Files.delete(store);
+        try (StubServer backend = StubServer.create().stub("GET", "/posts/1?full=true", 200, Map.of("id", 1)).start()) {
+            try (StubServer recorder = StubServer.recording(store, backend.baseUrl()).start()) {
+                Assert.assertEquals(ApiClient.forBaseUrl(recorder.baseUrl()).get("/posts/1?full=true")
+                        .json().path("id").asInt(), 1);
+            }
+        }
+        try (StubServer replay = StubServer.fromFile(store).start()) {
+            Assert.assertEquals(ApiClient.forBaseUrl(replay.baseUrl()).get("/posts/1?full=true")
+                    .json().path("id").asInt(), 1);
+        } finally {
+            Files.deleteIfExists(store);
+        }
+    }
+}
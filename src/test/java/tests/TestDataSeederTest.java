@@ -0,0 +1,118 @@
+package tests;
+
+import api.ApiClient;
+import api.StubServer;
+import api.TestDataSeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestDataSeederTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void capsConcurrencyResolvesReferencesAndCleansUpInReverse() throws Exception {
+        List<String> requests = new CopyOnWriteArrayList<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger ids = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        HttpServer backend = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        backend.setExecutor(executor);
+        backend.createContext("/", exchange -> {
+            try (exchange) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI() + " " + body);
+                sleep(50);
+                inFlight.decrementAndGet();
+                if ("POST".equals(exchange.getRequestMethod())) {
+                    byte[] response = ("{\"id\":" + ids.incrementAndGet() + "}").getBytes(StandardCharsets.UTF_8);
+                    exchange.sendResponseHeaders(201, response.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(response);
+                    }
+                } else {
+                    exchange.sendResponseHeaders(204, -1);
+                }
+            }
+        });
+        backend.start();
+        try {
+            ApiClient client = ApiClient.forBaseUrl("http://127.0.0.1:" + backend.getAddress().getPort());
+            TestDataSeeder seeder = new TestDataSeeder(client, 2);
+            List<TestDataSeeder.Created> seeded = seeder.seed(List.of(
+                    fixture("users", "/users", "{\"name\":\"a\"}", "{\"name\":\"b\"}", "{\"name\":\"c\"}", "{\"name\":\"d\"}"),
+                    fixture("posts", "/posts", "{\"userId\":\"${users[0].id}\"}", "{\"userId\":\"${users[0].id}\"}")));
+
+            Assert.assertEquals(seeded.size(), 6);
+            Assert.assertEquals(maxInFlight.get(), 2);
+            String firstUserId = seeded.get(0).id();
+            requests.stream().filter(request -> request.startsWith("POST /posts"))
+                    .forEach(request -> Assert.assertTrue(request.endsWith("{\"userId\":" + firstUserId + "}"), request));
+
+            seeder.cleanup();
+            List<String> deletes = requests.stream().filter(request -> request.startsWith("DELETE")).toList();
+            Assert.assertEquals(deletes.size(), 6);
+            Assert.assertTrue(deletes.subList(0, 2).stream().allMatch(request -> request.startsWith("DELETE /posts/")), deletes.toString());
+            Assert.assertTrue(deletes.subList(2, 6).stream().allMatch(request -> request.startsWith("DELETE /users/")), deletes.toString());
+            Assert.assertTrue(seeder.created().isEmpty());
+        } finally {
+            backend.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void missingItemsCountAsDeletedAndFailedDeletesAreKept() throws Exception {
+        try (StubServer server = StubServer.create()
+                .stub("POST", "/users", 201, Map.of("id", 7))
+                .stub("POST", "/posts", 201, Map.of("id", 9))
+                .stub("DELETE", "/posts/9", 500, Map.of("error", "locked"))
+                .start()) {
+            TestDataSeeder seeder = new TestDataSeeder(ApiClient.forBaseUrl(server.baseUrl()), 4);
+            seeder.seed(List.of(fixture("users", "/users", "{}"), fixture("posts", "/posts", "{\"userId\":\"${users[0].id}\"}")));
+
+            // No stub for DELETE /users/7, so the server answers 404
+            seeder.cleanup();
+
+            List<TestDataSeeder.Created> remaining = seeder.created();
+            Assert.assertEquals(remaining.size(), 1);
+            Assert.assertEquals(remaining.get(0).fixture().name(), "posts");
+            Assert.assertThrows(IllegalArgumentException.class,
+                    () -> seeder.seed(List.of(fixture("comments", "/comments", "{\"postId\":\"${posts[5].id}\"}"))));
+        }
+    }
+
+    private static TestDataSeeder.Fixture fixture(String name, String endpoint, String... items) throws IOException {
+        List<JsonNode> bodies = new ArrayList<>();
+        for (String item : items) {
+            bodies.add(MAPPER.readTree(item));
+        }
+        return new TestDataSeeder.Fixture(name, endpoint, "id", endpoint, bodies);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package tests;
+
+import api.TokenCache;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TokenCacheTest {
+
+    @Test
+    public void concurrentCallersShareOneLogin() {
+        AtomicInteger logins = new AtomicInteger();
+        CompletableFuture<TokenCache.Token> pending = new CompletableFuture<>();
+        try (TokenCache cache = new TokenCache((user, pass) -> {
+            logins.incrementAndGet();
+            return pending;
+        }, Duration.ofSeconds(1))) {
+            List<CompletableFuture<String>> tokens = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                tokens.add(cache.tokenAsync("env", "user", "pass"));
+            }
+            Instant now = Instant.now();
+            pending.complete(new TokenCache.Token("abc", now, now.plusSeconds(60)));
+
+            tokens.forEach(token -> Assert.assertEquals(token.join(), "abc"));
+            Assert.assertEquals(cache.tokenAsync("env", "user", "pass").join(), "abc");
+            Assert.assertEquals(logins.get(), 1);
+        }
+    }
+
+    @Test
+    public void failedAndExpiredLoginsAreRetried() {
+        AtomicInteger logins = new AtomicInteger();
+        try (TokenCache cache = new TokenCache((user, pass) -> {
+            Instant now = Instant.now();
+            return switch (logins.incrementAndGet()) {
+                case 1 -> CompletableFuture.failedFuture(new IllegalStateException("rate limited"));
+                case 2 -> CompletableFuture.completedFuture(new TokenCache.Token("expired", now, now.minusSeconds(1)));
+                default -> CompletableFuture.completedFuture(new TokenCache.Token("fresh", now, now.plusSeconds(60)));
+            };
+        }, Duration.ofSeconds(1))) {
+            Assert.assertThrows(CompletionException.class, () -> cache.tokenAsync("env", "user", "pass").join());
+            Assert.assertEquals(cache.tokenAsync("env", "user", "pass").join(), "expired");
+            Assert.assertEquals(cache.tokenAsync("env", "user", "pass").join(), "fresh");
+            Assert.assertEquals(logins.get(), 3);
+        }
+    }
+
+    @Test
+    public void staleRefreshDoesNotReplaceNewerLogin() throws InterruptedException {
+        List<CompletableFuture<TokenCache.Token>> logins = new ArrayList<>();
+        Instant now = Instant.now();
+        logins.add(CompletableFuture.completedFuture(new TokenCache.Token("old", now, now.plusSeconds(10))));
+        logins.add(new CompletableFuture<>());
+        logins.add(CompletableFuture.completedFuture(new TokenCache.Token("new", now, now.plusSeconds(60))));
+        AtomicInteger calls = new AtomicInteger();
+        // The first token is refreshed about 100ms after it was issued
+        try (TokenCache cache = new TokenCache((user, pass) -> logins.get(calls.getAndIncrement()),
+                Duration.ofMillis(9_900))) {
+            Assert.assertEquals(cache.tokenAsync("env", "user", "old-pass").join(), "old");
+            Thread.sleep(10);
+            Assert.assertEquals(cache.tokenAsync("env", "user", "old-pass").join(), "old");
+            for (int i = 0; i < 100 && calls.get() < 2; i++) {
+                Thread.sleep(20);
+            }
+            Assert.assertEquals(calls.get(), 2, "background refresh should have started");
+
+            Assert.assertEquals(cache.tokenAsync("env", "user", "new-pass").join(), "new");
+            logins.get(1).complete(new TokenCache.Token("stale", now, now.plusSeconds(60)));
+            Assert.assertEquals(cache.tokenAsync("env", "user", "new-pass").join(), "new");
+            Assert.assertEquals(calls.get(), 3);
+        }
+    }
+}